@@ -0,0 +1,52 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.configuration.AuthUserService;
+import com.comme.comme.user.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthUserServiceBenchmark {
+
+    @Param({"cached", "uncached"})
+    String mode;
+
+    private AuthUserService authUserService;
+
+    private boolean bypassCache;
+
+    private String username;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        authUserService = application.getBean(AuthUserService.class);
+        username = BenchmarkUsers.uniqueUsername("bench-user");
+        application.getBean(UserService.class).save(BenchmarkUsers.create(username));
+        bypassCache = "uncached".equals(mode);
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        if (bypassCache) {
+            authUserService.clear();
+        }
+        return authUserService.loadUserByUsername(username);
+    }
+}
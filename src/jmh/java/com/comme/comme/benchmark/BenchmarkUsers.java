@@ -0,0 +1,29 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.user.User;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class BenchmarkUsers {
+
+    static final String PASSWORD = "P@ssw0rd";
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    private BenchmarkUsers() {
+    }
+
+    // Trials can share one application context, so every saved user needs its own name
+    static String uniqueUsername(String prefix) {
+        return prefix + "-" + sequence.incrementAndGet();
+    }
+
+    static User create(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setSurname("bench-surname");
+        user.setPassword(PASSWORD);
+        user.setImage("image.png");
+        return user;
+    }
+}
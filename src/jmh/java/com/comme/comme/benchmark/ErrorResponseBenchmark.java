@@ -0,0 +1,71 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.error.ApiError;
+import com.comme.comme.error.ApiErrorWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.error.ErrorAttributeOptions;
+import org.springframework.boot.web.servlet.error.DefaultErrorAttributes;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.RequestDispatcher;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc (enabled in the benchmark profile) to compare allocations per 401
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorResponseBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private DefaultErrorAttributes errorAttributes;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        errorAttributes = new DefaultErrorAttributes();
+        request = new MockHttpServletRequest("POST", "/api/1.0/login");
+        request.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, HttpStatus.UNAUTHORIZED.value());
+        request.setAttribute(RequestDispatcher.ERROR_MESSAGE, HttpStatus.UNAUTHORIZED.getReasonPhrase());
+        request.setAttribute(RequestDispatcher.ERROR_REQUEST_URI, "/api/1.0/login");
+    }
+
+    // The work ErrorHandler and the message converter do on the /error dispatch, without the container overhead
+    @Benchmark
+    public MockHttpServletResponse errorDispatch() throws IOException {
+        Map<String, Object> attributes = errorAttributes.getErrorAttributes(new ServletWebRequest(request),
+                ErrorAttributeOptions.of(ErrorAttributeOptions.Include.MESSAGE));
+        ApiError apiError = new ApiError((Integer) attributes.get("status"), (String) attributes.get("message"), (String) attributes.get("path"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        objectMapper.writeValue(response.getOutputStream(), apiError);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse template() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ApiErrorWriter.write(request, response, HttpStatus.UNAUTHORIZED);
+        return response;
+    }
+}
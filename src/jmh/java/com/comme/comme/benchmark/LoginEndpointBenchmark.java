@@ -0,0 +1,74 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.configuration.AccessTokenService;
+import com.comme.comme.configuration.CredentialCache;
+import com.comme.comme.user.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+// POST /api/1.0/login through Tomcat and the security filter chain: Basic with the credential cache warm,
+// Basic with the cache cleared before every request (full BCrypt), and a bearer access token
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginEndpointBenchmark {
+
+    @Param({"basic-cached", "basic-uncached", "token"})
+    String mode;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    private CredentialCache credentialCache;
+
+    private String username;
+
+    private String url;
+
+    private HttpEntity<Void> request;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        credentialCache = application.getBean(CredentialCache.class);
+        username = BenchmarkUsers.uniqueUsername("bench-user");
+        application.getBean(UserService.class).save(BenchmarkUsers.create(username));
+        url = "http://localhost:" + application.getBean(Environment.class).getProperty("local.server.port") + "/api/1.0/login";
+
+        HttpHeaders basic = new HttpHeaders();
+        basic.setBasicAuth(username, BenchmarkUsers.PASSWORD);
+        request = new HttpEntity<>(basic);
+        if (mode.equals("token")) {
+            ResponseEntity<String> login = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+            HttpHeaders bearer = new HttpHeaders();
+            bearer.setBearerAuth(login.getHeaders().getFirst(AccessTokenService.TOKEN_HEADER));
+            request = new HttpEntity<>(bearer);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<String> login() {
+        if (mode.equals("basic-uncached")) {
+            credentialCache.clear();
+        }
+        return restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+    }
+}
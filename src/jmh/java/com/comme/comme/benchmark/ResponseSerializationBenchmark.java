@@ -0,0 +1,89 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.configuration.ApiSerializationModule;
+import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.GenericResponse;
+import com.comme.comme.user.User;
+import com.comme.comme.user.Views;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Reflective bean serializers against ApiSerializationModule, with the writer created per call as the message converter does
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    private ObjectMapper reflective;
+
+    private ObjectMapper precompiled;
+
+    private User user;
+
+    private ApiError apiError;
+
+    private GenericResponse genericResponse;
+
+    @Setup
+    public void setUp() {
+        reflective = Jackson2ObjectMapperBuilder.json().build();
+        precompiled = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ApiSerializationModule()).build();
+        user = BenchmarkUsers.create("bench-user");
+        user.setId(1);
+        apiError = new ApiError(400, "Validation error", "/api/1.0/users");
+        apiError.setValidationErrors(Collections.singletonMap("username", "This name is in use"));
+        genericResponse = new GenericResponse("User saved");
+    }
+
+    @Benchmark
+    public byte[] userReflective() throws JsonProcessingException {
+        return baseView(reflective).writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] userPrecompiled() throws JsonProcessingException {
+        return baseView(precompiled).writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] apiErrorReflective() throws JsonProcessingException {
+        return reflective.writeValueAsBytes(apiError);
+    }
+
+    @Benchmark
+    public byte[] apiErrorPrecompiled() throws JsonProcessingException {
+        return precompiled.writeValueAsBytes(apiError);
+    }
+
+    @Benchmark
+    public byte[] genericResponseReflective() throws JsonProcessingException {
+        return reflective.writeValueAsBytes(genericResponse);
+    }
+
+    @Benchmark
+    public byte[] genericResponsePrecompiled() throws JsonProcessingException {
+        return precompiled.writeValueAsBytes(genericResponse);
+    }
+
+    private static ObjectWriter baseView(ObjectMapper mapper) {
+        return mapper.writerWithView(Views.Base.class);
+    }
+}
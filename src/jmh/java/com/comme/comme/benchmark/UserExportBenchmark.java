@@ -0,0 +1,63 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.user.UserExportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// Full export of 1M users; with -prof gc the allocation per operation should scale with rows while the heap
+// after each GC stays flat. A small -Xmx makes a regression to buffering the table show up as an OutOfMemoryError.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class UserExportBenchmark {
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"false", "true"})
+    boolean gzip;
+
+    private UserExportService userExportService;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        userExportService = application.getBean(UserExportService.class);
+        new JdbcTemplate(application.getBean(DataSource.class)).update(
+                "insert into user (id, username, surname, password, image) "
+                        + "select 1000000000 + x, 'export-' || x, 'export-surname', 'not-a-hash', null from system_range(1, ?)", rows);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        return userExportService.export(new DiscardingOutputStream(), gzip);
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
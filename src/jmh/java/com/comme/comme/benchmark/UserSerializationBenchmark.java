@@ -0,0 +1,54 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.user.User;
+import com.comme.comme.user.Views;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private ObjectWriter baseViewWriter;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        baseViewWriter = objectMapper.writerWithView(Views.Base.class);
+        user = BenchmarkUsers.create("bench-user");
+        user.setId(1);
+    }
+
+    // What MappingJackson2HttpMessageConverter does for @JsonView responses on every call
+    @Benchmark
+    public byte[] writerPerCall() throws JsonProcessingException {
+        return objectMapper.writerWithView(Views.Base.class).writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] sharedWriter() throws JsonProcessingException {
+        return baseViewWriter.writeValueAsBytes(user);
+    }
+}
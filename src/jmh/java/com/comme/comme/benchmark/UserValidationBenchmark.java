@@ -0,0 +1,52 @@
+package com.comme.comme.benchmark;
+
+import com.comme.comme.user.RegistrationChecks;
+import com.comme.comme.user.User;
+import com.comme.comme.user.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserValidationBenchmark {
+
+    // "free" is answered by the username index alone, "taken" falls through to the database
+    @Param({"free", "taken"})
+    String username;
+
+    private Validator validator;
+
+    private User user;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        validator = application.getBean(Validator.class);
+        String taken = BenchmarkUsers.uniqueUsername("taken-user");
+        application.getBean(UserService.class).save(BenchmarkUsers.create(taken));
+        user = BenchmarkUsers.create("free".equals(username) ? BenchmarkUsers.uniqueUsername("free-user") : taken);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> validate() {
+        return validator.validate(user, Default.class, RegistrationChecks.class);
+    }
+}
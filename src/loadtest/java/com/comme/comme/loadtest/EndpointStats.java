@@ -0,0 +1,66 @@
+package com.comme.comme.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Latencies of one endpoint in microseconds, recorded wait-free from the load threads
+class EndpointStats {
+
+    private static final long HIGHEST_TRACKABLE = TimeUnit.MINUTES.toMicros(1);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99, 100};
+
+    private final String path;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE, 3);
+
+    private final AtomicLong errors = new AtomicLong();
+
+    EndpointStats(String path) {
+        this.path = path;
+    }
+
+    void record(long startNanos, long endNanos, boolean ok) {
+        recorder.recordValue(Math.min(HIGHEST_TRACKABLE, TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos)));
+        if (!ok) {
+            errors.incrementAndGet();
+        }
+    }
+
+    void reset() {
+        recorder.reset();
+        errors.set(0);
+    }
+
+    void report(PrintStream out, double seconds, boolean correctCoordinatedOmission) {
+        Histogram histogram = recorder.getIntervalHistogram();
+        out.printf("%n== %s%n", path);
+        out.printf("requests=%d errors=%d throughput=%.1f/s%n", histogram.getTotalCount(), errors.get(),
+                histogram.getTotalCount() / seconds);
+        percentiles(out, "latency", histogram);
+        if (correctCoordinatedOmission && histogram.getTotalCount() > 0) {
+            Histogram corrected = histogram.copyCorrectedForCoordinatedOmission(histogram.getValueAtPercentile(50));
+            percentiles(out, "corrected", corrected);
+            histogram = corrected;
+        }
+        // Standard .hgrm layout in milliseconds, readable by the HdrHistogram plotter
+        histogram.outputPercentileDistribution(out, 1000.0);
+    }
+
+    private static void percentiles(PrintStream out, String label, Histogram histogram) {
+        StringBuilder line = new StringBuilder(label).append(" ms:");
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(" p%s=%.2f", percentile == 100 ? "max" : trim(percentile),
+                    histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        out.println(line);
+    }
+
+    private static String trim(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
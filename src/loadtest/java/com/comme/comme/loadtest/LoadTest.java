@@ -0,0 +1,235 @@
+package com.comme.comme.loadtest;
+
+import com.comme.comme.ComMeApplication;
+import com.comme.comme.user.User;
+import com.comme.comme.user.UserService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+// End-to-end load generator: boots the application on a random port and drives registrations and logins through
+// Tomcat, the security filter chain and H2. Options are --key=value, see the loadtest profile in pom.xml.
+//
+// rate mode (open loop): requests are due at fixed intervals whether or not earlier ones have returned, and latency
+// is measured from when a request was due, so a stalled server is charged for every request it held back.
+// closed mode: each of `concurrency` workers sends its next request as soon as the previous one returns. Its raw
+// histogram undercounts stalls (coordinated omission); the corrected one back-fills the requests a worker would have
+// sent during a stall, using the raw median as the expected interval.
+public class LoadTest {
+
+    private static final String PASSWORD = "P@ssw0rd";
+
+    private final Map<String, String> options;
+
+    private final HttpClient client;
+
+    private final ExecutorService executor;
+
+    private final Map<Operation, EndpointStats> stats = new LinkedHashMap<>();
+
+    private final List<Operation> mix = new ArrayList<>();
+
+    private String baseUrl;
+
+    private List<String> loginHeaders;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.executor = Executors.newCachedThreadPool();
+        this.client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+        for (String entry : option("mix", "register:1,login:9").split(",")) {
+            String[] weight = entry.split(":");
+            Operation operation = Operation.valueOf(weight[0].trim().toUpperCase());
+            stats.put(operation, new EndpointStats(operation.path));
+            for (int i = 0; i < Integer.parseInt(weight[1].trim()); i++) {
+                mix.add(operation);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws IOException, InterruptedException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ComMeApplication.class).run(
+                "--server.port=0", "--logging.level.root=WARN",
+                "--comme.security.login-throttle.enabled=false", "--comme.warmup.enabled=false")) {
+            baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            seedUsers(context.getBean(UserService.class), Integer.parseInt(option("users", "200")));
+
+            Duration warmup = Duration.parse("PT" + option("warmup", "10s"));
+            Duration duration = Duration.parse("PT" + option("duration", "30s"));
+            String mode = option("mode", "rate");
+            drive(mode, warmup);
+            stats.values().forEach(EndpointStats::reset);
+            long start = System.nanoTime();
+            drive(mode, duration);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Path output = Paths.get(option("output", "target/loadtest-result.txt"));
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            try (PrintStream out = new PrintStream(Files.newOutputStream(output), false, StandardCharsets.UTF_8.name())) {
+                out.printf("mode=%s mix=%s duration=%s%s%n", mode, option("mix", "register:1,login:9"), duration,
+                        mode.equals("rate") ? " rate=" + option("rate", "100") + "/s" : " concurrency=" + option("concurrency", "16"));
+                for (EndpointStats endpoint : stats.values()) {
+                    endpoint.report(out, seconds, mode.equals("closed"));
+                }
+            }
+            System.out.println("Load test report written to " + output.toAbsolutePath());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void seedUsers(UserService userService, int count) {
+        loginHeaders = new ArrayList<>(count);
+        IntStream.range(0, count).parallel().forEach(i -> {
+            User user = new User();
+            user.setUsername("load-login-" + i);
+            user.setSurname("load-test");
+            user.setPassword(PASSWORD);
+            userService.save(user);
+        });
+        for (int i = 0; i < count; i++) {
+            String credentials = "load-login-" + i + ":" + PASSWORD;
+            loginHeaders.add("Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private void drive(String mode, Duration duration) throws InterruptedException {
+        if (mode.equals("closed")) {
+            driveClosedLoop(Integer.parseInt(option("concurrency", "16")), duration);
+        } else if (mode.equals("rate")) {
+            driveConstantRate(Integer.parseInt(option("rate", "100")), Integer.parseInt(option("max-in-flight", "1000")), duration);
+        } else {
+            throw new IllegalArgumentException("mode must be rate or closed, was " + mode);
+        }
+    }
+
+    private void driveConstantRate(int rate, int maxInFlight, Duration duration) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (long i = 0; ; i++) {
+            long due = start + i * interval;
+            if (due - end >= 0) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // Waiting for a permit delays the send but not `due`, so the wait still counts as latency
+            inFlight.acquire();
+            Operation operation = next();
+            pending.add(client.sendAsync(request(operation), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        stats.get(operation).record(due, System.nanoTime(), failure == null && response.statusCode() == 200);
+                        inFlight.release();
+                    }));
+            pending.removeIf(CompletableFuture::isDone);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(failure -> null).join();
+    }
+
+    private void driveClosedLoop(int concurrency, Duration duration) throws InterruptedException {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() - end < 0) {
+                    Operation operation = next();
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = client.send(request(operation), HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    stats.get(operation).record(start, System.nanoTime(), ok);
+                }
+            }, "load-worker-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private Operation next() {
+        return mix.get(ThreadLocalRandom.current().nextInt(mix.size()));
+    }
+
+    private HttpRequest request(Operation operation) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + operation.path)).timeout(Duration.ofSeconds(30));
+        if (operation == Operation.LOGIN) {
+            return builder.header("Authorization", loginHeaders.get(ThreadLocalRandom.current().nextInt(loginHeaders.size())))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        }
+        String body = "{\"username\":\"load-" + UUID.randomUUID() + "\",\"surname\":\"load-test\",\"password\":\"" + PASSWORD + "\"}";
+        return builder.header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private enum Operation {
+        REGISTER("/api/1.0/users"),
+        LOGIN("/api/1.0/login");
+
+        private final String path;
+
+        Operation(String path) {
+            this.path = path;
+        }
+    }
+}
@@ -2,10 +2,17 @@ package com.comme.comme;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class ComMeApplication {
+
+    private static final int STARTUP_STEPS = 10000;
+
     public static void main(String[] args) {
-        SpringApplication.run(ComMeApplication.class, args);
+        SpringApplication application = new SpringApplication(ComMeApplication.class);
+        // Records each startup step; StartupConfiguration logs the timeline once the application is ready
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        application.run(args);
     }
 }
@@ -0,0 +1,89 @@
+package com.comme.comme.avatar;
+
+import com.comme.comme.shared.CurrentUser;
+import com.comme.comme.shared.FileResponses;
+import com.comme.comme.user.User;
+import com.comme.comme.user.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@RestController
+public class AvatarController {
+
+    @Autowired
+    AvatarStorage avatarStorage;
+
+    @Autowired
+    ThumbnailService thumbnailService;
+
+    @Autowired
+    UserService userService;
+
+    @Value("${comme.avatars.thumbnails.wait:5s}")
+    Duration thumbnailWait;
+
+    @PostMapping("/api/1.0/avatars")
+    public StoredAvatar uploadAvatar(@CurrentUser User user, HttpServletRequest request) throws IOException {
+        String image = avatarStorage.store(request.getInputStream());
+        userService.updateImage(user.getUsername(), image);
+        thumbnailService.generateAll(image);
+        return new StoredAvatar(image);
+    }
+
+    @GetMapping("/api/1.0/avatars/{image}")
+    public void getAvatar(@PathVariable String image, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = avatarStorage.resolve(image);
+        if (file == null || !Files.isRegularFile(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Avatar not found");
+        }
+        MediaType contentType = MediaTypeFactory.getMediaType(image).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        FileResponses.write(file, "\"" + image + "\"", contentType, request, response);
+    }
+
+    @GetMapping("/api/1.0/avatars/{image}/{variant}")
+    public void getAvatarVariant(@PathVariable String image, @PathVariable String variant,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = avatarStorage.resolve(image);
+        AvatarVariant avatarVariant = AvatarVariant.fromName(variant);
+        if (file == null || avatarVariant == null || !Files.isRegularFile(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Avatar not found");
+        }
+        Path thumbnail = awaitVariant(image, avatarVariant);
+        MediaType contentType = MediaTypeFactory.getMediaType(thumbnail.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        FileResponses.write(thumbnail, "\"" + image + "-" + avatarVariant.getName() + "\"", contentType, request, response);
+    }
+
+    private Path awaitVariant(String image, AvatarVariant variant) {
+        try {
+            return thumbnailService.variant(image, variant).get(thumbnailWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ResponseStatusException) {
+                throw (ResponseStatusException) e.getCause();
+            }
+            throw new IllegalStateException("Thumbnail generation failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Thumbnail is still being generated");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Thumbnail is still being generated");
+        }
+    }
+}
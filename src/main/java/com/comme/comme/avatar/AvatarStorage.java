@@ -0,0 +1,128 @@
+package com.comme.comme.avatar;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+// Avatars are stored once per distinct content under <root>/<first two hex digits>/<sha-256>.<extension>
+@Component
+public class AvatarStorage {
+
+    private static final Pattern IMAGE_ID = Pattern.compile("[0-9a-f]{64}\\.(png|jpg|gif|webp)");
+
+    private final Path root;
+
+    private final long maxSize;
+
+    public AvatarStorage(@Value("${comme.avatars.root:${java.io.tmpdir}/comme-avatars}") String root,
+                         @Value("${comme.avatars.max-size:5MB}") DataSize maxSize) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath();
+        this.maxSize = maxSize.toBytes();
+        Files.createDirectories(this.root);
+    }
+
+    public String store(InputStream content) throws IOException {
+        Path upload = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            byte[] header = new byte[12];
+            int headerLength = 0;
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(upload)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Avatar must not exceed " + maxSize + " bytes");
+                    }
+                    if (headerLength < header.length) {
+                        int copied = Math.min(read, header.length - headerLength);
+                        System.arraycopy(buffer, 0, header, headerLength, copied);
+                        headerLength += copied;
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            String extension = extensionOf(header, headerLength);
+            if (extension == null) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Avatar must be a PNG, JPEG, GIF or WebP image");
+            }
+            String id = toHex(digest.digest()) + "." + extension;
+            Path target = resolve(id);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return id;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    // Returns null for anything that is not a well-formed image id, so ids can never escape the root
+    public Path resolve(String id) {
+        if (id == null || !IMAGE_ID.matcher(id).matches()) {
+            return null;
+        }
+        return root.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    // Variants live under <root>/variants/<variant>/; JPEG sources stay JPEG, everything else becomes PNG
+    public Path resolveVariant(String id, AvatarVariant variant) {
+        if (resolve(id) == null) {
+            return null;
+        }
+        int dot = id.indexOf('.');
+        String extension = id.endsWith(".jpg") ? "jpg" : "png";
+        return root.resolve("variants").resolve(variant.getName()).resolve(id.substring(0, 2))
+                .resolve(id.substring(0, dot) + "." + extension);
+    }
+
+    private static String extensionOf(byte[] header, int length) {
+        if (length >= 4 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "png";
+        }
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (length >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "gif";
+        }
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.comme.comme.avatar;
+
+import java.util.Locale;
+
+public enum AvatarVariant {
+    SMALL(64),
+    MEDIUM(128),
+    LARGE(256);
+
+    private final int size;
+
+    AvatarVariant(int size) {
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static AvatarVariant fromName(String name) {
+        for (AvatarVariant variant : values()) {
+            if (variant.getName().equals(name)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.comme.comme.avatar;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class StoredAvatar {
+
+    private String image;
+
+    public StoredAvatar(String image) {
+        this.image = image;
+    }
+}
@@ -0,0 +1,198 @@
+package com.comme.comme.avatar;
+
+import com.comme.comme.shared.ExpiringCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class ThumbnailService implements MeterBinder {
+
+    private final AvatarStorage avatarStorage;
+
+    private final ThreadPoolExecutor executor;
+
+    // One in-flight generation per variant file; concurrent requests for it share the same future
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    // Image ids are content hashes, so an image that cannot be turned into variants never will be
+    private final ExpiringCache<String, ResponseStatusException> rejectedImages;
+
+    private final long maxPixels;
+
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong generationNanos = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ThumbnailService(AvatarStorage avatarStorage,
+                            @Value("${comme.avatars.thumbnails.threads:2}") int threads,
+                            @Value("${comme.avatars.thumbnails.queue-capacity:200}") int queueCapacity,
+                            @Value("${comme.avatars.thumbnails.max-pixels:25000000}") long maxPixels,
+                            @Value("${comme.avatars.thumbnails.rejected-cache.max-size:10000}") int rejectedCacheSize,
+                            @Value("${comme.avatars.thumbnails.rejected-cache.ttl:1h}") Duration rejectedCacheTtl) {
+        this.avatarStorage = avatarStorage;
+        this.maxPixels = maxPixels;
+        this.rejectedImages = new ExpiringCache<>(rejectedCacheSize, rejectedCacheTtl);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("thumbnails-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Best effort: variants that do not fit in the queue are produced lazily on first request
+    public void generateAll(String image) {
+        for (AvatarVariant variant : AvatarVariant.values()) {
+            variant(image, variant).exceptionally(e -> null);
+        }
+    }
+
+    public CompletableFuture<Path> variant(String image, AvatarVariant variant) {
+        ResponseStatusException rejection = rejectedImages.get(image);
+        if (rejection != null) {
+            return CompletableFuture.failedFuture(rejection);
+        }
+        Path source = avatarStorage.resolve(image);
+        Path target = avatarStorage.resolveVariant(image, variant);
+        if (Files.exists(target)) {
+            return CompletableFuture.completedFuture(target);
+        }
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(target, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (Files.exists(target)) {
+            inFlight.remove(target, created);
+            created.complete(target);
+            return created;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(generate(source, target, variant));
+                } catch (ResponseStatusException e) {
+                    // Variants of one upload decode concurrently; all of them fail with the first cached rejection
+                    ResponseStatusException cached = rejectedImages.putIfAbsent(image, e);
+                    created.completeExceptionally(cached != null ? cached : e);
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(target, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            inFlight.remove(target, created);
+            created.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Thumbnail queue is full"));
+        }
+        return created;
+    }
+
+    private Path generate(Path source, Path target, AvatarVariant variant) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage original = read(source);
+            String format = target.getFileName().toString().endsWith(".jpg") ? "jpg" : "png";
+            BufferedImage thumbnail = scale(original, variant.getSize(), "jpg".equals(format));
+
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+            try {
+                ImageIO.write(thumbnail, format, temp.toFile());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            generationNanos.addAndGet(System.nanoTime() - start);
+            generated.incrementAndGet();
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The header is checked before any pixel data is decoded, so a small file cannot claim a huge raster
+    private BufferedImage read(Path source) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw unsupportedFormat();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Image is too large for variants");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw unsupportedFormat();
+        }
+    }
+
+    private static ResponseStatusException unsupportedFormat() {
+        return new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "No variants for this image format");
+    }
+
+    private static BufferedImage scale(BufferedImage original, int box, boolean opaque) {
+        double ratio = Math.min(1.0, Math.min((double) box / original.getWidth(), (double) box / original.getHeight()));
+        int width = Math.max(1, (int) Math.round(original.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(original.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("comme.thumbnails.queue.depth", executor, e -> e.getQueue().size()).register(registry);
+        Gauge.builder("comme.thumbnails.in.flight", inFlight, Map::size).register(registry);
+        FunctionCounter.builder("comme.thumbnails.rejected", rejected, AtomicLong::get).register(registry);
+        FunctionTimer.builder("comme.thumbnails.generation", this,
+                service -> service.generated.get(), service -> service.generationNanos.get(), TimeUnit.NANOSECONDS).register(registry);
+    }
+}
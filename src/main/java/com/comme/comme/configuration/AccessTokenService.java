@@ -0,0 +1,119 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.user.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class AccessTokenService {
+
+    public static final String TOKEN_HEADER = "X-Auth-Token";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String EPHEMERAL_KEY_ID = "local";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private final String activeKeyId;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public AccessTokenService(TokenProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    AccessTokenService(TokenProperties properties, Clock clock) {
+        this.ttl = properties.getTtl();
+        this.clock = clock;
+        properties.getKeys().forEach((id, secret) -> {
+            if (id.indexOf('.') >= 0) {
+                throw new IllegalStateException("Token key id must not contain '.': " + id);
+            }
+            keys.put(id, new SecretKeySpec(Base64.getDecoder().decode(secret), HMAC_ALGORITHM));
+        });
+        if (keys.isEmpty()) {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            keys.put(EPHEMERAL_KEY_ID, new SecretKeySpec(secret, HMAC_ALGORITHM));
+        }
+        this.activeKeyId = properties.getActiveKey() != null ? properties.getActiveKey() : keys.keySet().iterator().next();
+        if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalStateException("Unknown active token key: " + activeKeyId);
+        }
+    }
+
+    // The token carries the whole Views.Base profile, so verifying it needs no lookup. Profile changes show up in
+    // tokens issued after them, and a removed user's token stays valid until it expires.
+    public String issue(User user) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        String payload = expiresAt + "\n" + user.getId() + "\n" + encodeClaim(user.getUsername())
+                + "\n" + encodeClaim(user.getSurname()) + "\n" + encodeClaim(user.getImage());
+        String unsigned = activeKeyId + "." + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return unsigned + "." + ENCODER.encodeToString(sign(keys.get(activeKeyId), unsigned));
+    }
+
+    public User verify(String token) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot) {
+            return null;
+        }
+        SecretKeySpec key = keys.get(token.substring(0, firstDot));
+        if (key == null) {
+            return null;
+        }
+        String unsigned = token.substring(0, lastDot);
+        try {
+            byte[] signature = DECODER.decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(signature, sign(key, unsigned))) {
+                return null;
+            }
+            String[] claims = new String(DECODER.decode(token.substring(firstDot + 1, lastDot)), StandardCharsets.UTF_8)
+                    .split("\n", -1);
+            if (claims.length != 5 || Long.parseLong(claims[0]) <= clock.instant().getEpochSecond()) {
+                return null;
+            }
+            User user = new User();
+            user.setId(Long.parseLong(claims[1]));
+            user.setUsername(decodeClaim(claims[2]));
+            user.setSurname(decodeClaim(claims[3]));
+            user.setImage(decodeClaim(claims[4]));
+            return user;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Text claims are Base64 encoded one by one, so a value may contain the separator; null and "" both encode empty
+    private static String encodeClaim(String value) {
+        return value == null ? "" : ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeClaim(String claim) {
+        return claim.isEmpty() ? null : new String(DECODER.decode(claim), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] sign(SecretKeySpec key, String value) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
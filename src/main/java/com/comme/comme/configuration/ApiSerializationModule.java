@@ -0,0 +1,38 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.error.ApiError;
+import com.comme.comme.error.ApiErrorSerializer;
+import com.comme.comme.shared.GenericResponse;
+import com.comme.comme.shared.GenericResponseSerializer;
+import com.comme.comme.user.User;
+import com.comme.comme.user.UserBaseViewSerializer;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+
+// Swaps in the hand-written serializers while keeping Jackson's bean serializers as their fallbacks
+public class ApiSerializationModule extends SimpleModule {
+
+    public ApiSerializationModule() {
+        super("comme-api-serialization");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDescription,
+                                                      JsonSerializer<?> serializer) {
+                Class<?> type = beanDescription.getBeanClass();
+                if (type == User.class) {
+                    return new UserBaseViewSerializer(serializer);
+                }
+                if (type == ApiError.class) {
+                    return new ApiErrorSerializer(serializer);
+                }
+                if (type == GenericResponse.class) {
+                    return new GenericResponseSerializer(serializer);
+                }
+                return serializer;
+            }
+        });
+    }
+}
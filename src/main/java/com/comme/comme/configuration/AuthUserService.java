@@ -1,24 +1,192 @@
 package com.comme.comme.configuration;
 
+import com.comme.comme.shared.ExpiringCache;
+import com.comme.comme.shared.StageTimer;
+import com.comme.comme.shared.Warmup;
 import com.comme.comme.user.User;
+import com.comme.comme.user.UserChangedEvent;
 import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserShards;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-public class AuthUserService implements UserDetailsService {
+public class AuthUserService implements UserDetailsService, MeterBinder {
+
+    private final UserRepository userRepository;
+
+    private final StageTimer stageTimer;
+
+    private final UserShards userShards;
+
+    private final ExpiringCache<String, PrincipalSnapshot> principals;
+
+    private final ExpiringCache<String, Boolean> unknownUsernames;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+
     @Autowired
-    private UserRepository userRepository;
+    public AuthUserService(UserRepository userRepository, StageTimer stageTimer, UserShards userShards,
+                           @Value("${comme.security.principal-cache.max-size:10000}") int maxSize,
+                           @Value("${comme.security.principal-cache.ttl:5m}") Duration ttl,
+                           @Value("${comme.security.principal-cache.negative-max-size:10000}") int negativeMaxSize,
+                           @Value("${comme.security.principal-cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.userRepository = userRepository;
+        this.stageTimer = stageTimer;
+        this.userShards = userShards;
+        this.principals = new ExpiringCache<>(maxSize, ttl);
+        this.unknownUsernames = new ExpiringCache<>(negativeMaxSize, negativeTtl);
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username);
-        if(user == null){
+        return stageTimer.time("load-user", () -> loadUser(username));
+    }
+
+    private User loadUser(String username) {
+        boolean counted = !Warmup.isActive();
+        PrincipalSnapshot snapshot = principals.get(username);
+        if(snapshot != null){
+            if(counted){
+                hits.incrementAndGet();
+            }
+            return snapshot.toUser();
+        }
+        if(unknownUsernames.get(username) != null){
+            if(counted){
+                negativeHits.incrementAndGet();
+            }
             throw new UsernameNotFoundException("User not found");
         }
-        return user;
+        if(counted){
+            misses.incrementAndGet();
+        }
+
+        long observedGeneration = generation.get();
+        long start = System.nanoTime();
+        User user = userShards.forUsername(username, () -> userRepository.findByUsername(username));
+        if(counted){
+            loadNanos.addAndGet(System.nanoTime() - start);
+            loads.incrementAndGet();
+        }
+
+        snapshot = user == null ? null : new PrincipalSnapshot(user);
+        synchronized (this) {
+            if(generation.get() == observedGeneration){
+                if(snapshot == null){
+                    unknownUsernames.put(username, Boolean.TRUE);
+                } else {
+                    principals.put(username, snapshot);
+                }
+            }
+        }
+        if(snapshot == null){
+            throw new UsernameNotFoundException("User not found");
+        }
+        return snapshot.toUser();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUsername());
+        if (event.getPreviousUsername() != null) {
+            invalidate(event.getPreviousUsername());
+        }
+    }
+
+    public synchronized void invalidate(String username) {
+        generation.incrementAndGet();
+        principals.remove(username);
+        unknownUsernames.remove(username);
+    }
+
+    // For entries no concurrent load can be racing, e.g. names only the warm-up ever looks up: unlike invalidate,
+    // it leaves the generation alone, so loads in flight for other users still get cached
+    public synchronized void evict(String username) {
+        principals.remove(username);
+        unknownUsernames.remove(username);
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        principals.clear();
+        unknownUsernames.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getNegativeHitCount() {
+        return negativeHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("comme.auth.principal.cache.hits", this, AuthUserService::getHitCount).register(registry);
+        FunctionCounter.builder("comme.auth.principal.cache.negative.hits", this, AuthUserService::getNegativeHitCount).register(registry);
+        FunctionCounter.builder("comme.auth.principal.cache.misses", this, AuthUserService::getMissCount).register(registry);
+        FunctionCounter.builder("comme.auth.principal.cache.evictions", this,
+                service -> service.principals.evictionCount() + service.unknownUsernames.evictionCount()).register(registry);
+        Gauge.builder("comme.auth.principal.cache.hit.ratio", this, AuthUserService::hitRatio).register(registry);
+        Gauge.builder("comme.auth.principal.cache.size", principals, ExpiringCache::size).register(registry);
+        Gauge.builder("comme.auth.principal.cache.negative.size", unknownUsernames, ExpiringCache::size).register(registry);
+        FunctionTimer.builder("comme.auth.principal.load", this,
+                service -> service.loads.get(), service -> service.loadNanos.get(), TimeUnit.NANOSECONDS).register(registry);
+    }
+
+    private double hitRatio() {
+        long served = hits.get() + negativeHits.get();
+        long total = served + misses.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    private static final class PrincipalSnapshot {
+        private final long id;
+        private final String username;
+        private final String surname;
+        private final String password;
+        private final String image;
+
+        private PrincipalSnapshot(User user) {
+            this.id = user.getId();
+            this.username = user.getUsername();
+            this.surname = user.getSurname();
+            this.password = user.getPassword();
+            this.image = user.getImage();
+        }
+
+        private User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setSurname(surname);
+            user.setPassword(password);
+            user.setImage(image);
+            return user;
+        }
     }
 }
@@ -0,0 +1,52 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.StageTimer;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+
+    private final CredentialCache credentialCache;
+
+    private final StageTimer stageTimer;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, CredentialCache credentialCache,
+                                         StageTimer stageTimer) {
+        this.delegate = delegate;
+        this.credentialCache = credentialCache;
+        this.stageTimer = stageTimer;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        return stageTimer.time("auth", () -> authenticateWithCache(authentication));
+    }
+
+    private Authentication authenticateWithCache(Authentication authentication) {
+        if (authentication.getCredentials() == null) {
+            return delegate.authenticate(authentication);
+        }
+        String username = authentication.getName();
+        String password = authentication.getCredentials().toString();
+
+        Authentication cached = credentialCache.lookup(username, password, authentication.getDetails());
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = credentialCache.generation();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null) {
+            credentialCache.store(username, password, result, generation);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,134 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.ExpiringCache;
+import com.comme.comme.user.UserChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class CredentialCache implements MeterBinder {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ExpiringCache<String, VerifiedCredential> cache;
+    private final SecretKeySpec key;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CredentialCache(@Value("${comme.security.credential-cache.max-size:10000}") int maxSize,
+                           @Value("${comme.security.credential-cache.ttl:5m}") Duration ttl) {
+        this.cache = new ExpiringCache<>(maxSize, ttl);
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    public Authentication lookup(String username, String password, Object details) {
+        VerifiedCredential credential = cache.get(username);
+        if (credential == null || !MessageDigest.isEqual(credential.digest, digest(username, password))) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(credential.principal, null, credential.authorities);
+        authentication.setDetails(details);
+        return authentication;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public void store(String username, String password, Authentication authentication, long observedGeneration) {
+        VerifiedCredential credential = new VerifiedCredential(digest(username, password),
+                authentication.getPrincipal(), authentication.getAuthorities());
+        synchronized (this) {
+            if (generation.get() == observedGeneration) {
+                cache.put(username, credential);
+            }
+        }
+    }
+
+    public synchronized void invalidate(String username) {
+        generation.incrementAndGet();
+        cache.remove(username);
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUsername());
+        if (event.getPreviousUsername() != null) {
+            invalidate(event.getPreviousUsername());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("comme.auth.credential.cache.hits", this, CredentialCache::getHitCount).register(registry);
+        FunctionCounter.builder("comme.auth.credential.cache.misses", this, CredentialCache::getMissCount).register(registry);
+        FunctionCounter.builder("comme.auth.credential.cache.evictions", this, CredentialCache::getEvictionCount).register(registry);
+        Gauge.builder("comme.auth.credential.cache.size", cache, ExpiringCache::size).register(registry);
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class VerifiedCredential {
+        private final byte[] digest;
+        private final Object principal;
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        private VerifiedCredential(byte[] digest, Object principal, Collection<? extends GrantedAuthority> authorities) {
+            this.digest = digest;
+            this.principal = principal;
+            this.authorities = authorities;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.comme.comme.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "comme.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    private boolean enabled;
+
+    // How long a replica that failed to hand out a connection is skipped before it is tried again
+    private Duration replicaRetryAfter = Duration.ofSeconds(10);
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
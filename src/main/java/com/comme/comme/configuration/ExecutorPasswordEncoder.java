@@ -0,0 +1,35 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.StageTimer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+public class ExecutorPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final StageTimer stageTimer;
+
+    public ExecutorPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor passwordHashingExecutor,
+                                   StageTimer stageTimer) {
+        this.delegate = delegate;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.stageTimer = stageTimer;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return stageTimer.time("hash", () -> passwordHashingExecutor.call(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return stageTimer.time("hash", () -> passwordHashingExecutor.call(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
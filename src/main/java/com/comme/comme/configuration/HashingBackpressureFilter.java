@@ -0,0 +1,51 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.error.ApiError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+public class HashingBackpressureFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+
+    public HashingBackpressureFilter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            HashingCapacityExceededException capacityExceeded = findCapacityExceeded(e);
+            if (capacityExceeded == null || response.isCommitted()) {
+                throw e;
+            }
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, capacityExceeded.getRetryAfter().getSeconds())));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ApiError(HttpStatus.SERVICE_UNAVAILABLE.value(), capacityExceeded.getMessage(), request.getServletPath()));
+        }
+    }
+
+    private static HashingCapacityExceededException findCapacityExceeded(Throwable throwable) {
+        while (throwable != null) {
+            if (throwable instanceof HashingCapacityExceededException) {
+                return (HashingCapacityExceededException) throwable;
+            }
+            throwable = throwable.getCause();
+        }
+        return null;
+    }
+}
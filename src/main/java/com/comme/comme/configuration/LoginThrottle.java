@@ -0,0 +1,75 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.TokenBucketTable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class LoginThrottle implements MeterBinder {
+
+    private final boolean enabled;
+
+    private final TokenBucketTable usernames;
+
+    private final TokenBucketTable addresses;
+
+    private final AtomicLong usernameRejections = new AtomicLong();
+    private final AtomicLong addressRejections = new AtomicLong();
+
+    @Autowired
+    public LoginThrottle(@Value("${comme.security.login-throttle.enabled:true}") boolean enabled,
+                         @Value("${comme.security.login-throttle.table-size:65536}") int tableSize,
+                         @Value("${comme.security.login-throttle.ttl:10m}") Duration ttl,
+                         @Value("${comme.security.login-throttle.username.capacity:10}") int usernameCapacity,
+                         @Value("${comme.security.login-throttle.username.refill-period:1m}") Duration usernameRefillPeriod,
+                         @Value("${comme.security.login-throttle.ip.capacity:50}") int addressCapacity,
+                         @Value("${comme.security.login-throttle.ip.refill-period:1m}") Duration addressRefillPeriod) {
+        this.enabled = enabled;
+        this.usernames = new TokenBucketTable(tableSize, usernameCapacity, usernameRefillPeriod, ttl);
+        this.addresses = new TokenBucketTable(tableSize, addressCapacity, addressRefillPeriod, ttl);
+    }
+
+    // Returns 0 when the attempt may proceed, otherwise how long the caller should wait
+    public Duration acquire(String username, String address) {
+        if (!enabled) {
+            return Duration.ZERO;
+        }
+        long addressWait = addresses.tryAcquire(address);
+        if (addressWait > 0) {
+            addressRejections.incrementAndGet();
+            return Duration.ofNanos(addressWait);
+        }
+        long usernameWait = usernames.tryAcquire(username);
+        if (usernameWait > 0) {
+            addresses.release(address);
+            usernameRejections.incrementAndGet();
+            return Duration.ofNanos(usernameWait);
+        }
+        return Duration.ZERO;
+    }
+
+    // Successful attempts give their tokens back, so only failures drain the buckets
+    public void release(String username, String address) {
+        if (!enabled) {
+            return;
+        }
+        addresses.release(address);
+        usernames.release(username);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("comme.login.throttled", usernameRejections, AtomicLong::get).tag("key", "username").register(registry);
+        FunctionCounter.builder("comme.login.throttled", addressRejections, AtomicLong::get).tag("key", "ip").register(registry);
+        Gauge.builder("comme.login.throttle.buckets", usernames, TokenBucketTable::size).tag("key", "username").register(registry);
+        Gauge.builder("comme.login.throttle.buckets", addresses, TokenBucketTable::size).tag("key", "ip").register(registry);
+    }
+}
@@ -0,0 +1,71 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.error.ApiError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+public class LoginThrottlingFilter extends OncePerRequestFilter {
+
+    private static final String BASIC = "Basic ";
+
+    private final LoginThrottle loginThrottle;
+
+    private final ObjectMapper objectMapper;
+
+    public LoginThrottlingFilter(LoginThrottle loginThrottle, ObjectMapper objectMapper) {
+        this.loginThrottle = loginThrottle;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String username = basicUsername(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (username == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String address = request.getRemoteAddr();
+        Duration wait = loginThrottle.acquire(username, address);
+        if (!wait.isZero()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (wait.toMillis() + 999) / 1000)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ApiError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many login attempts", request.getServletPath()));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (response.getStatus() != HttpStatus.UNAUTHORIZED.value()) {
+                loginThrottle.release(username, address);
+            }
+        }
+    }
+
+    private static String basicUsername(String header) {
+        if (header == null || !header.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getDecoder().decode(header.substring(BASIC.length()).trim()), StandardCharsets.UTF_8);
+            int colon = decoded.indexOf(':');
+            return colon == -1 ? null : decoded.substring(0, colon);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
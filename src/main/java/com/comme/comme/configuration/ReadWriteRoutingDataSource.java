@@ -0,0 +1,152 @@
+package com.comme.comme.configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Read-only transactions go to a healthy replica, everything else to the primary. Once a request has written,
+// the rest of that request reads from the primary too. Must sit behind a LazyConnectionDataSourceProxy so the
+// read-only flag is known by the time a connection is actually fetched.
+// Until the context has refreshed, reads go to the primary as well: the startup scans that build the username and
+// suggestion indexes must not miss users a lagging replica has not caught up on.
+public class ReadWriteRoutingDataSource extends AbstractDataSource
+        implements MeterBinder, AutoCloseable, ApplicationListener<ContextRefreshedEvent> {
+
+    static final String PINNED_TO_PRIMARY = ReadWriteRoutingDataSource.class.getName() + ".PINNED_TO_PRIMARY";
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final long retryAfterNanos;
+
+    private final AtomicLongArray unhealthyUntil;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile boolean replicasInUse;
+
+    private final AtomicLong primaryRoutes = new AtomicLong();
+    private final AtomicLong replicaRoutes = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration retryAfter) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.retryAfterNanos = retryAfter.toNanos();
+        this.unhealthyUntil = new AtomicLongArray(replicas.size());
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        useReplicas();
+    }
+
+    public void useReplicas() {
+        replicasInUse = true;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(username, password);
+    }
+
+    private Connection route(String username, String password) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            pinToPrimary();
+            return primary(username, password);
+        }
+        if (!replicasInUse || isPinnedToPrimary()) {
+            return primary(username, password);
+        }
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            if (unhealthyUntil.get(index) - System.nanoTime() > 0) {
+                continue;
+            }
+            try {
+                Connection connection = connect(replicas.get(index), username, password);
+                replicaRoutes.incrementAndGet();
+                return connection;
+            } catch (SQLException e) {
+                logger.warn("Replica " + index + " is unavailable, reading from the primary", e);
+                unhealthyUntil.set(index, System.nanoTime() + retryAfterNanos);
+            }
+        }
+        fallbacks.incrementAndGet();
+        return connect(primary, username, password);
+    }
+
+    private Connection primary(String username, String password) throws SQLException {
+        primaryRoutes.incrementAndGet();
+        return connect(primary, username, password);
+    }
+
+    private static Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    private static void pinToPrimary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(PINNED_TO_PRIMARY, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static boolean isPinnedToPrimary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null && attributes.getAttribute(PINNED_TO_PRIMARY, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicas) {
+            if (replica instanceof AutoCloseable) {
+                ((AutoCloseable) replica).close();
+            }
+        }
+        if (primary instanceof AutoCloseable) {
+            ((AutoCloseable) primary).close();
+        }
+    }
+
+    private int healthyReplicas() {
+        int healthy = 0;
+        for (int i = 0; i < unhealthyUntil.length(); i++) {
+            if (unhealthyUntil.get(i) - System.nanoTime() <= 0) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("comme.datasource.routed", primaryRoutes, AtomicLong::get).tag("target", "primary").register(registry);
+        FunctionCounter.builder("comme.datasource.routed", replicaRoutes, AtomicLong::get).tag("target", "replica").register(registry);
+        FunctionCounter.builder("comme.datasource.routed", fallbacks, AtomicLong::get).tag("target", "fallback").register(registry);
+        Gauge.builder("comme.datasource.replicas.healthy", this, ReadWriteRoutingDataSource::healthyReplicas).register(registry);
+    }
+}
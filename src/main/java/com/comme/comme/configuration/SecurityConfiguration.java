@@ -1,9 +1,12 @@
 package com.comme.comme.configuration;
 
+import com.comme.comme.shared.StageTimer;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -12,6 +15,8 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.logout.LogoutFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -19,9 +24,29 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final AuthUserService authUserService;
 
+    private final CredentialCache credentialCache;
+
+    private final AccessTokenService accessTokenService;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final LoginThrottle loginThrottle;
+
+    private final ObjectMapper objectMapper;
+
+    private final StageTimer stageTimer;
+
     @Autowired
-    public SecurityConfiguration(AuthUserService authUserService) {
+    public SecurityConfiguration(AuthUserService authUserService, CredentialCache credentialCache,
+                                 AccessTokenService accessTokenService, PasswordHashingExecutor passwordHashingExecutor,
+                                 LoginThrottle loginThrottle, ObjectMapper objectMapper, StageTimer stageTimer) {
         this.authUserService = authUserService;
+        this.credentialCache = credentialCache;
+        this.accessTokenService = accessTokenService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.loginThrottle = loginThrottle;
+        this.objectMapper = objectMapper;
+        this.stageTimer = stageTimer;
     }
 
     @Override
@@ -29,10 +54,18 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         http.csrf().disable();
 
         http.httpBasic().authenticationEntryPoint(new BasicAuthenticationEntryPoint());
+        http.exceptionHandling().accessDeniedHandler(new ApiErrorAccessDeniedHandler());
+        http.addFilterBefore(new TokenAuthenticationFilter(accessTokenService), BasicAuthenticationFilter.class);
+        http.addFilterBefore(new LoginThrottlingFilter(loginThrottle, objectMapper), BasicAuthenticationFilter.class);
+        http.addFilterBefore(new HashingBackpressureFilter(objectMapper), LogoutFilter.class);
 
         http
                 .authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/1.0/login").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/1.0/avatars").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/1.0/users/batch").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/1.0/users/import").authenticated()
+                .antMatchers(HttpMethod.GET, "/api/1.0/users/export").authenticated()
                 .and()
                 .authorizeRequests().anyRequest().permitAll();
 
@@ -41,7 +74,10 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder());
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(authUserService);
+        daoAuthenticationProvider.setPasswordEncoder(new ExecutorPasswordEncoder(passwordEncoder(), passwordHashingExecutor, stageTimer));
+        auth.authenticationProvider(new CachingAuthenticationProvider(daoAuthenticationProvider, credentialCache, stageTimer));
     }
 
     @Bean
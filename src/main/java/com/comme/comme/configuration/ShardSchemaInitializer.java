@@ -0,0 +1,52 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.user.UserShards;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.EnumSet;
+
+// Runs while the session factory is built, before Hibernate's own ddl-auto (which only reaches shard 0)
+// and before any bean can query a shard.
+public class ShardSchemaInitializer implements Integrator {
+
+    private final UserShards userShards;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardSchemaInitializer(UserShards userShards, DataSource dataSource) {
+        this.userShards = userShards;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        userShards.forEachShard(shard -> {
+            new SchemaUpdate().execute(EnumSet.of(TargetType.DATABASE), metadata, serviceRegistry);
+            moveSequenceIntoRange(shard);
+        });
+    }
+
+    // Only shards holding no id of their own range yet are moved; the +50 matches User's allocationSize
+    private void moveSequenceIntoRange(int shard) {
+        if (shard == 0) {
+            return;
+        }
+        long base = shard * UserShards.SHARD_ID_RANGE;
+        Integer issued = jdbcTemplate.queryForObject("select count(*) from user where id > ? and id <= ?",
+                Integer.class, base, base + UserShards.SHARD_ID_RANGE);
+        if (issued != null && issued == 0) {
+            jdbcTemplate.execute("alter sequence user_seq restart with " + (base + 50));
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
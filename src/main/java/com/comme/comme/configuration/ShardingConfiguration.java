@@ -0,0 +1,61 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.user.UserShards;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Configuration
+@ConditionalOnProperty(prefix = "comme.users.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+    public ShardingConfiguration(ShardingProperties shardingProperties, DataSourceRoutingProperties routingProperties) {
+        if (routingProperties.isEnabled()) {
+            throw new IllegalStateException("comme.users.sharding and comme.datasource.routing cannot be enabled together");
+        }
+        if (shardingProperties.getShards().isEmpty()) {
+            throw new IllegalStateException("comme.users.sharding.shards must list at least one shard");
+        }
+    }
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties dataSourceProperties, ShardingProperties shardingProperties) {
+        List<DataSource> shards = shardingProperties.getShards().stream()
+                .map(shard -> DataSourceBuilder.create()
+                        .driverClassName(dataSourceProperties.determineDriverClassName())
+                        .url(shard.getUrl())
+                        .username(shard.getUsername())
+                        .password(shard.getPassword())
+                        .build())
+                .collect(Collectors.toList());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // Connections are bound to a shard per transaction, so open-in-view must not hold one across transactions
+    @Bean
+    public HibernatePropertiesCustomizer shardedHibernateProperties(ShardingProperties shardingProperties, UserShards userShards,
+                                                                    ShardRoutingDataSource dataSource) {
+        return properties -> {
+            properties.put(AvailableSettings.CONNECTION_HANDLING,
+                    PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+            if (shardingProperties.isInitializeSchema()) {
+                properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                        (IntegratorProvider) () -> Collections.singletonList(new ShardSchemaInitializer(userShards, dataSource)));
+            }
+        };
+    }
+}
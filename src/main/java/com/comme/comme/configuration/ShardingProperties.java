@@ -0,0 +1,34 @@
+package com.comme.comme.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "comme.users.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    // Runs Hibernate's schema update on every shard and moves each shard's id sequence into its own range.
+    // Meant for a one-time run when shards are provisioned (or for embedded test databases); managed schemas
+    // should instead restart user_seq on shard i at i * UserShards.SHARD_ID_RANGE + 50 in their migration.
+    private boolean initializeSchema;
+
+    // Order matters: a user lives on shards[hash(username) mod size]
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
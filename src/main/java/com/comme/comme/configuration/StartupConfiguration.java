@@ -0,0 +1,86 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.user.RegistrationFeed;
+import com.comme.comme.user.UserSuggestionIndex;
+import com.comme.comme.user.UsernameIndex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Configuration
+public class StartupConfiguration {
+
+    private static final Log logger = LogFactory.getLog(StartupConfiguration.class);
+
+    private static final String BEAN_INSTANTIATE = "spring.beans.instantiate";
+
+    @Value("${comme.startup.timeline.slowest-beans:20}")
+    private int slowestBeans;
+
+    @Value("${comme.startup.training-run:false}")
+    private boolean trainingRun;
+
+    // Started with the context even under spring.main.lazy-initialization (fast-startup profile): the feed polls and
+    // purges the outbox in the background, and the two in-memory indexes would otherwise scan every user table on the
+    // first sign-up or suggestion request instead of before readiness
+    @Bean
+    static LazyInitializationExcludeFilter eagerBackgroundServices() {
+        return LazyInitializationExcludeFilter.forBeanTypes(RegistrationFeed.class, UsernameIndex.class, UserSuggestionIndex.class);
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        ApplicationStartup applicationStartup = context.getBean(ApplicationStartup.class);
+        if (applicationStartup instanceof BufferingApplicationStartup) {
+            logTimeline(((BufferingApplicationStartup) applicationStartup).getBufferedTimeline(), slowestBeans);
+        }
+        // The class list of the CDS training run is written when the JVM exits (see the fast-startup Maven profile)
+        if (trainingRun) {
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+
+    private static void logTimeline(StartupTimeline timeline, int slowestBeans) {
+        List<StartupTimeline.TimelineEvent> events = timeline.getEvents();
+        if (logger.isDebugEnabled()) {
+            events.forEach(event -> logger.debug(describe(event)));
+        }
+        logger.info("Startup phases:\n" + events.stream()
+                .filter(event -> !event.getStartupStep().getName().startsWith("spring.beans."))
+                .map(StartupConfiguration::describe)
+                .collect(Collectors.joining("\n")));
+        logger.info("Slowest beans:\n" + events.stream()
+                .filter(event -> BEAN_INSTANTIATE.equals(event.getStartupStep().getName()))
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(slowestBeans)
+                .map(StartupConfiguration::describe)
+                .collect(Collectors.joining("\n")));
+    }
+
+    // Durations include nested steps, e.g. a bean's time includes the beans it depends on
+    private static String describe(StartupTimeline.TimelineEvent event) {
+        StringBuilder line = new StringBuilder()
+                .append(String.format("%6d ms  ", event.getDuration().toMillis()))
+                .append(event.getStartupStep().getName());
+        for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+            line.append(' ').append(tag.getKey()).append('=').append(tag.getValue());
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.ServerTiming;
+import com.comme.comme.shared.StageTimer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+// Serializes into a buffer first so the Server-Timing header, including serialization itself,
+// can still be set before the response is committed.
+public class TimedMappingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final StageTimer stageTimer;
+
+    public TimedMappingJackson2HttpMessageConverter(ObjectMapper objectMapper, StageTimer stageTimer) {
+        super(objectMapper);
+        this.stageTimer = stageTimer;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        ServerTiming timing = ServerTiming.current();
+        if (timing == null) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        long start = System.nanoTime();
+        super.writeInternal(object, type, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return buffer;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return outputMessage.getHeaders();
+            }
+        });
+        stageTimer.record("serialize", timing, System.nanoTime() - start);
+        outputMessage.getHeaders().set(ServerTiming.HEADER, timing.toHeaderValue());
+        buffer.writeTo(outputMessage.getBody());
+    }
+}
@@ -0,0 +1,23 @@
+package com.comme.comme.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "comme.security.token")
+public class TokenProperties {
+
+    private Duration ttl = Duration.ofHours(1);
+
+    // Key id used to sign new tokens; every key in "keys" is still accepted for verification
+    private String activeKey;
+
+    // Key id -> Base64 encoded HMAC secret
+    private Map<String, String> keys = new LinkedHashMap<>();
+}
@@ -0,0 +1,127 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.Warmup;
+import com.comme.comme.user.RegistrationChecks;
+import com.comme.comme.user.User;
+import com.comme.comme.user.Views;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Spring Boot only switches readiness to ACCEPTING_TRAFFIC after all runners return, so /actuator/health/readiness
+// stays OUT_OF_SERVICE until the login and registration paths have been exercised for comme.warmup.duration.
+// Only synthetic users that never exist in the database are used, and their principal cache entries are evicted.
+// The work runs under Warmup, so stage timers and principal cache counters only reflect real traffic.
+@Component
+@ConditionalOnProperty(name = "comme.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Log logger = LogFactory.getLog(WarmupRunner.class);
+
+    private static final String PASSWORD = "Warm-up-P4ssword";
+
+    private final AuthUserService authUserService;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final Validator validator;
+
+    private final ObjectWriter baseViewWriter;
+
+    private final Duration duration;
+
+    private final int threads;
+
+    private final AtomicLong iterations = new AtomicLong();
+
+    public WarmupRunner(AuthUserService authUserService, PasswordEncoder passwordEncoder, Validator validator,
+                        ObjectMapper objectMapper,
+                        @Value("${comme.warmup.duration:10s}") Duration duration,
+                        @Value("${comme.warmup.threads:2}") int threads) {
+        this.authUserService = authUserService;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.baseViewWriter = objectMapper.writerWithView(Views.Base.class);
+        this.duration = duration;
+        this.threads = threads;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException, ExecutionException {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("warmup-"));
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> Warmup.run(() -> {
+                    while (System.nanoTime() - deadline < 0) {
+                        iteration();
+                    }
+                })));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("Warm-up finished: " + iterations.get() + " iterations in "
+                + Duration.ofNanos(System.nanoTime() - start).toMillis() + " ms");
+    }
+
+    public long getIterations() {
+        return iterations.get();
+    }
+
+    private void iteration() {
+        String username = "warmup-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(username);
+        user.setSurname("warm-up");
+        user.setPassword(PASSWORD);
+        user.setImage("warm-up.png");
+
+        validator.validate(user, Default.class, RegistrationChecks.class);
+        try {
+            baseViewWriter.writeValueAsBytes(user);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        passwordEncoder.matches(PASSWORD, passwordEncoder.encode(PASSWORD));
+        try {
+            authUserService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException expected) {
+            // the lookup and negative-cache path is what gets warmed
+        } finally {
+            authUserService.evict(username);
+        }
+        iterations.incrementAndGet();
+    }
+}
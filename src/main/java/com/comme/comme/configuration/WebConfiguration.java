@@ -0,0 +1,23 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.shared.StageTimer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+@Configuration
+public class WebConfiguration {
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   StageTimer stageTimer) {
+        return new TimedMappingJackson2HttpMessageConverter(objectMapper, stageTimer);
+    }
+
+    @Bean
+    public Module apiSerializationModule() {
+        return new ApiSerializationModule();
+    }
+}
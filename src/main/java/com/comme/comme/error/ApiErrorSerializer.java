@@ -0,0 +1,59 @@
+package com.comme.comme.error;
+
+import com.comme.comme.shared.FastPathSerializer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Mirrors @JsonInclude(NON_NULL) on ApiError
+public class ApiErrorSerializer extends FastPathSerializer<ApiError> {
+
+    private static final SerializableString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+    private static final SerializableString URL = new SerializedString("url");
+    private static final SerializableString VALIDATION_ERRORS = new SerializedString("validationErrors");
+
+    public ApiErrorSerializer(JsonSerializer<?> fallback) {
+        super(ApiError.class, fallback);
+    }
+
+    @Override
+    protected boolean supports(Class<?> activeView) {
+        return activeView == null;
+    }
+
+    @Override
+    protected void writeFields(ApiError value, JsonGenerator generator) throws IOException {
+        generator.writeFieldName(TIMESTAMP);
+        generator.writeNumber(value.getTimestamp());
+        generator.writeFieldName(STATUS);
+        generator.writeNumber(value.getStatus());
+        if (value.getMessage() != null) {
+            generator.writeFieldName(MESSAGE);
+            generator.writeString(value.getMessage());
+        }
+        if (value.getUrl() != null) {
+            generator.writeFieldName(URL);
+            generator.writeString(value.getUrl());
+        }
+        if (value.getValidationErrors() != null) {
+            generator.writeFieldName(VALIDATION_ERRORS);
+            generator.writeStartObject();
+            for (Map.Entry<String, String> error : value.getValidationErrors().entrySet()) {
+                generator.writeFieldName(error.getKey());
+                generator.writeString(error.getValue());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    @Override
+    protected FastPathSerializer<ApiError> withFallback(JsonSerializer<?> fallback) {
+        return new ApiErrorSerializer(fallback);
+    }
+}
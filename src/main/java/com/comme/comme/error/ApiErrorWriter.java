@@ -0,0 +1,98 @@
+package com.comme.comme.error;
+
+import com.comme.comme.shared.ServerTiming;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Writes ApiError bodies straight to the response for the common statuses, skipping the /error re-dispatch.
+// Only the timestamp and url change per request; the rest of the document is encoded once.
+public final class ApiErrorWriter {
+
+    private static final byte[] TIMESTAMP = bytes("{\"timestamp\":");
+    private static final byte[] URL = bytes(",\"url\":\"");
+    private static final byte[] MESSAGE = bytes(",\"message\":\"");
+    private static final byte[] END = bytes("\"}");
+
+    private static final Map<HttpStatus, Template> TEMPLATES = new EnumMap<>(HttpStatus.class);
+
+    static {
+        for (HttpStatus status : new HttpStatus[]{HttpStatus.BAD_REQUEST, HttpStatus.UNAUTHORIZED, HttpStatus.FORBIDDEN, HttpStatus.NOT_FOUND}) {
+            TEMPLATES.put(status, new Template(status));
+        }
+    }
+
+    private ApiErrorWriter() {
+    }
+
+    public static boolean supports(HttpStatus status) {
+        return TEMPLATES.containsKey(status);
+    }
+
+    public static void write(HttpServletRequest request, HttpServletResponse response, HttpStatus status) throws IOException {
+        write(request, response, status, null);
+    }
+
+    // A null message uses the status reason phrase, as sendError(status, reason) would
+    public static void write(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        Template template = TEMPLATES.get(status);
+        if (template == null) {
+            throw new IllegalArgumentException("No error template for " + status);
+        }
+        byte[] timestamp = Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.US_ASCII);
+        byte[] messagePart = message == null ? template.statusAndMessage : null;
+        byte[] encodedMessage = message == null ? null : JsonStringEncoder.getInstance().quoteAsUTF8(message);
+        byte[] url = JsonStringEncoder.getInstance().quoteAsUTF8(request.getRequestURI());
+
+        int length = TIMESTAMP.length + timestamp.length + URL.length + url.length + END.length
+                + (messagePart != null ? messagePart.length : template.status.length + MESSAGE.length + encodedMessage.length + 1);
+
+        response.setStatus(status.value());
+        ServerTiming timing = ServerTiming.of(request);
+        if (timing != null && !timing.isEmpty()) {
+            response.setHeader(ServerTiming.HEADER, timing.toHeaderValue());
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(length);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(TIMESTAMP);
+        out.write(timestamp);
+        if (messagePart != null) {
+            out.write(messagePart);
+        } else {
+            out.write(template.status);
+            out.write(MESSAGE);
+            out.write(encodedMessage);
+            out.write('"');
+        }
+        out.write(URL);
+        out.write(url);
+        out.write(END);
+        out.flush();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Template {
+
+        private final byte[] status;
+
+        private final byte[] statusAndMessage;
+
+        private Template(HttpStatus status) {
+            this.status = bytes(",\"status\":" + status.value());
+            this.statusAndMessage = bytes(",\"status\":" + status.value() + ",\"message\":\""
+                    + new String(JsonStringEncoder.getInstance().quoteAsString(status.getReasonPhrase())) + "\"");
+        }
+    }
+}
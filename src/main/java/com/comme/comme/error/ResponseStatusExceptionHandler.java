@@ -0,0 +1,24 @@
+package com.comme.comme.error;
+
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@RestControllerAdvice
+public class ResponseStatusExceptionHandler {
+
+    @ExceptionHandler(ResponseStatusException.class)
+    void handleResponseStatusException(ResponseStatusException exception, HttpServletRequest request,
+                                       HttpServletResponse response) throws IOException {
+        exception.getResponseHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (ApiErrorWriter.supports(exception.getStatus())) {
+            ApiErrorWriter.write(request, response, exception.getStatus(), exception.getReason());
+        } else {
+            response.sendError(exception.getRawStatusCode(), exception.getReason());
+        }
+    }
+}
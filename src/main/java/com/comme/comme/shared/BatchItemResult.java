@@ -0,0 +1,31 @@
+package com.comme.comme.shared;
+
+import com.comme.comme.error.ApiError;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@JsonInclude(value = Include.NON_NULL)
+public class BatchItemResult {
+
+    private int index;
+    private String message;
+    private ApiError error;
+
+    public static BatchItemResult success(int index, String message) {
+        BatchItemResult result = new BatchItemResult();
+        result.setIndex(index);
+        result.setMessage(message);
+        return result;
+    }
+
+    public static BatchItemResult failure(int index, ApiError error) {
+        BatchItemResult result = new BatchItemResult();
+        result.setIndex(index);
+        result.setError(error);
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.comme.comme.shared;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BatchResponse {
+
+    private int saved;
+    private int failed;
+    private List<BatchItemResult> results;
+
+    public BatchResponse(List<BatchItemResult> results) {
+        this.results = results;
+        for (BatchItemResult result : results) {
+            if (result.getError() == null) {
+                saved++;
+            } else {
+                failed++;
+            }
+        }
+    }
+}
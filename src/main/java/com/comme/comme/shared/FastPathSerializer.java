@@ -0,0 +1,64 @@
+package com.comme.comme.shared;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+// Hand-written serializer for a hot DTO. Requests in a view the fast path does not cover
+// are handed to the bean serializer Jackson would have used, so output never changes.
+public abstract class FastPathSerializer<T> extends StdSerializer<T> implements ContextualSerializer, ResolvableSerializer {
+
+    protected final JsonSerializer<Object> fallback;
+
+    @SuppressWarnings("unchecked")
+    protected FastPathSerializer(Class<T> type, JsonSerializer<?> fallback) {
+        super(type);
+        this.fallback = (JsonSerializer<Object>) fallback;
+    }
+
+    protected abstract boolean supports(Class<?> activeView);
+
+    protected abstract void writeFields(T value, JsonGenerator generator) throws IOException;
+
+    protected abstract FastPathSerializer<T> withFallback(JsonSerializer<?> fallback);
+
+    @Override
+    public void serialize(T value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (!supports(provider.getActiveView())) {
+            fallback.serialize(value, generator, provider);
+            return;
+        }
+        generator.writeStartObject(value);
+        writeFields(value, generator);
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(T value, JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer) throws IOException {
+        fallback.serializeWithType(value, generator, provider, typeSerializer);
+    }
+
+    @Override
+    public void resolve(SerializerProvider provider) throws JsonMappingException {
+        if (fallback instanceof ResolvableSerializer) {
+            ((ResolvableSerializer) fallback).resolve(provider);
+        }
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+        if (!(fallback instanceof ContextualSerializer)) {
+            return this;
+        }
+        JsonSerializer<?> contextual = ((ContextualSerializer) fallback).createContextual(provider, property);
+        return contextual == fallback ? this : withFallback(contextual);
+    }
+}
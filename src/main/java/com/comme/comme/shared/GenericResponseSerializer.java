@@ -0,0 +1,33 @@
+package com.comme.comme.shared;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+
+import java.io.IOException;
+
+public class GenericResponseSerializer extends FastPathSerializer<GenericResponse> {
+
+    private static final SerializableString MESSAGE = new SerializedString("message");
+
+    public GenericResponseSerializer(JsonSerializer<?> fallback) {
+        super(GenericResponse.class, fallback);
+    }
+
+    @Override
+    protected boolean supports(Class<?> activeView) {
+        return activeView == null;
+    }
+
+    @Override
+    protected void writeFields(GenericResponse value, JsonGenerator generator) throws IOException {
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(value.getMessage());
+    }
+
+    @Override
+    protected FastPathSerializer<GenericResponse> withFallback(JsonSerializer<?> fallback) {
+        return new GenericResponseSerializer(fallback);
+    }
+}
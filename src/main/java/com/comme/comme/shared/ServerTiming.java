@@ -0,0 +1,51 @@
+package com.comme.comme.shared;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+public class ServerTiming {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final String ATTRIBUTE = ServerTiming.class.getName();
+
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    public static ServerTiming current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        ServerTiming timing = (ServerTiming) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timing == null) {
+            timing = new ServerTiming();
+            attributes.setAttribute(ATTRIBUTE, timing, RequestAttributes.SCOPE_REQUEST);
+        }
+        return timing;
+    }
+
+    // The timing recorded so far for this request, or null if no stage has been timed
+    public static ServerTiming of(HttpServletRequest request) {
+        return (ServerTiming) request.getAttribute(ATTRIBUTE);
+    }
+
+    public synchronized void add(String stage, long nanos) {
+        durations.merge(stage, nanos, Long::sum);
+    }
+
+    public synchronized boolean isEmpty() {
+        return durations.isEmpty();
+    }
+
+    public synchronized String toHeaderValue() {
+        StringJoiner value = new StringJoiner(", ");
+        durations.forEach((stage, nanos) -> value.add(String.format(Locale.ROOT, "%s;dur=%.3f", stage, nanos / 1_000_000.0)));
+        return value.toString();
+    }
+}
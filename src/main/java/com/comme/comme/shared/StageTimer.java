@@ -0,0 +1,56 @@
+package com.comme.comme.shared;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Component
+public class StageTimer {
+
+    // Resolved on the first recorded stage: meter binders depend on this bean, and the registry depends on them
+    private final ObjectProvider<MeterRegistry> registry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public StageTimer(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    public <T> T time(String stage, Supplier<T> action) {
+        return time(stage, ServerTiming.current(), action);
+    }
+
+    // For work handed off to another thread: capture ServerTiming.current() on the request thread first
+    public <T> T time(String stage, ServerTiming timing, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(stage, timing, System.nanoTime() - start);
+        }
+    }
+
+    public void record(String stage, ServerTiming timing, long nanos) {
+        if (Warmup.isActive()) {
+            return;
+        }
+        timers.computeIfAbsent(stage, this::timer).record(nanos, TimeUnit.NANOSECONDS);
+        if (timing != null) {
+            timing.add(stage, nanos);
+        }
+    }
+
+    private Timer timer(String stage) {
+        return Timer.builder("comme.stage")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry.getObject());
+    }
+}
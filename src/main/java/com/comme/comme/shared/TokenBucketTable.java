@@ -0,0 +1,124 @@
+package com.comme.comme.shared;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Fixed-size open-addressed table of immutable buckets updated by CAS; idle buckets expire and the stalest slot is reused when a probe window is full
+public class TokenBucketTable {
+
+    private static final int PROBES = 4;
+
+    private final AtomicReferenceArray<Bucket> slots;
+
+    private final int mask;
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private final long ttlNanos;
+
+    // Keys are usernames and client addresses; a per-instance secret keeps callers from choosing colliding keys
+    private final SipHash hasher;
+
+    public TokenBucketTable(int size, int capacity, Duration refillPeriod, Duration ttl) {
+        int tableSize = Integer.highestOneBit(Math.max(PROBES, size - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(tableSize);
+        this.mask = tableSize - 1;
+        this.capacity = capacity;
+        this.tokensPerNano = capacity / (double) refillPeriod.toNanos();
+        this.ttlNanos = ttl.toNanos();
+        SecureRandom random = new SecureRandom();
+        this.hasher = new SipHash(random.nextLong(), random.nextLong());
+    }
+
+    // Returns 0 when a token was taken, otherwise the nanoseconds until one becomes available
+    public long tryAcquire(String key) {
+        int hash = (int) hasher.hash(key);
+        while (true) {
+            long now = System.nanoTime();
+            int index = find(key, hash, now);
+            Bucket current = slots.get(index);
+            double tokens = isLive(current, key, now) ? refill(current, now) : capacity;
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            if (slots.compareAndSet(index, current, new Bucket(key, tokens - 1, now))) {
+                return 0;
+            }
+        }
+    }
+
+    public void release(String key) {
+        int hash = (int) hasher.hash(key);
+        while (true) {
+            long now = System.nanoTime();
+            int index = find(key, hash, now);
+            Bucket current = slots.get(index);
+            if (!isLive(current, key, now)) {
+                return;
+            }
+            double tokens = Math.min(capacity, refill(current, now) + 1);
+            if (slots.compareAndSet(index, current, new Bucket(key, tokens, now))) {
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        long now = System.nanoTime();
+        int live = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Bucket bucket = slots.get(i);
+            if (bucket != null && now - bucket.updatedNanos <= ttlNanos) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    private int find(String key, int hash, long now) {
+        int free = -1;
+        int stalest = -1;
+        long stalestUpdated = 0;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int index = (hash + probe) & mask;
+            Bucket bucket = slots.get(index);
+            if (bucket == null || now - bucket.updatedNanos > ttlNanos) {
+                if (free == -1) {
+                    free = index;
+                }
+            } else if (bucket.key.equals(key)) {
+                return index;
+            } else if (stalest == -1 || bucket.updatedNanos - stalestUpdated < 0) {
+                stalest = index;
+                stalestUpdated = bucket.updatedNanos;
+            }
+        }
+        return free != -1 ? free : stalest;
+    }
+
+    private boolean isLive(Bucket bucket, String key, long now) {
+        return bucket != null && bucket.key.equals(key) && now - bucket.updatedNanos <= ttlNanos;
+    }
+
+    private double refill(Bucket bucket, long now) {
+        return Math.min(capacity, bucket.tokens + (now - bucket.updatedNanos) * tokensPerNano);
+    }
+
+    private static final class Bucket {
+
+        private final String key;
+
+        private final double tokens;
+
+        private final long updatedNanos;
+
+        private Bucket(String key, double tokens, long updatedNanos) {
+            this.key = key;
+            this.tokens = tokens;
+            this.updatedNanos = updatedNanos;
+        }
+    }
+}
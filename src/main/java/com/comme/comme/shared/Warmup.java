@@ -0,0 +1,23 @@
+package com.comme.comme.shared;
+
+// Marks work done by the startup warm-up on the current thread, so request metrics only count real traffic
+public final class Warmup {
+
+    private static final ThreadLocal<Boolean> ACTIVE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private Warmup() {
+    }
+
+    public static boolean isActive() {
+        return ACTIVE.get();
+    }
+
+    public static void run(Runnable action) {
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            action.run();
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.comme.comme.user;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+public class DuplicateUsernameException extends RuntimeException {
+
+    static final String USERNAME_CONSTRAINT = "uk_user_username";
+
+    private static final String USERNAME_IN_USE_MESSAGE = "comme.constraints.username.UniqueUsername.message";
+
+    public DuplicateUsernameException(String username, Throwable cause) {
+        super("Username is in use: " + username, cause);
+    }
+
+    static boolean isUsernameConflict(DataIntegrityViolationException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            String name = cause instanceof ConstraintViolationException
+                    ? ((ConstraintViolationException) cause).getConstraintName() : cause.getMessage();
+            if (name != null && name.toLowerCase(Locale.ROOT).contains(USERNAME_CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String usernameInUseMessage() {
+        return ResourceBundle.getBundle("ValidationMessages", LocaleContextHolder.getLocale()).getString(USERNAME_IN_USE_MESSAGE);
+    }
+}
@@ -0,0 +1,17 @@
+package com.comme.comme.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// checkpoint is the last input line whose outcome is final; pass it back as "from" to resume an interrupted import
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress {
+
+    private long checkpoint;
+    private long imported;
+    private long failed;
+    private boolean done;
+}
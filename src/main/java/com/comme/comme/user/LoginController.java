@@ -1,8 +1,10 @@
 package com.comme.comme.user;
 
+import com.comme.comme.configuration.AccessTokenService;
 import com.comme.comme.error.ApiError;
 import com.comme.comme.shared.CurrentUser;
 import com.fasterxml.jackson.annotation.JsonView;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.nio.file.AccessDeniedException;
 import java.util.Collections;
 import java.util.Map;
@@ -21,9 +24,13 @@ import java.util.Map;
 @RestController
 public class LoginController {
 
+    @Autowired
+    AccessTokenService accessTokenService;
+
     @PostMapping("/api/1.0/login")
     @JsonView(Views.Base.class)
-    private User handleLogin(@CurrentUser User user){
+    private User handleLogin(@CurrentUser User user, HttpServletResponse response){
+        response.setHeader(AccessTokenService.TOKEN_HEADER, accessTokenService.issue(user));
         return user;
     }
 
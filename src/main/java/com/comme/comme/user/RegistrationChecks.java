@@ -0,0 +1,5 @@
+package com.comme.comme.user;
+
+// Validation group for constraints that have to consult the user store
+public interface RegistrationChecks {
+}
@@ -0,0 +1,50 @@
+package com.comme.comme.user;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+// Outbox row written in the same transaction as the user it announces; RegistrationFeed reads and purges them.
+// Ids come straight from the sequence (no pooled blocks) so their order follows allocation order across instances.
+@Data
+@Entity
+@NoArgsConstructor
+@Table(indexes = @Index(name = "ix_registration_event_created_at", columnList = "createdAt"))
+public class RegistrationEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "registration_event_seq")
+    @SequenceGenerator(name = "registration_event_seq", sequenceName = "registration_event_seq", allocationSize = 1)
+    private long id;
+
+    private long userId;
+
+    private String username;
+
+    private String surname;
+
+    private String image;
+
+    private long createdAt;
+
+    public static RegistrationEvent of(User user) {
+        RegistrationEvent event = new RegistrationEvent();
+        event.setUserId(user.getId());
+        event.setUsername(user.getUsername());
+        event.setSurname(user.getSurname());
+        event.setImage(user.getImage());
+        event.setCreatedAt(System.currentTimeMillis());
+        return event;
+    }
+
+    public UserSummary toSummary() {
+        return new UserSummary(userId, username, surname, image);
+    }
+}
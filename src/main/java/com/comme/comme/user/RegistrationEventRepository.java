@@ -0,0 +1,26 @@
+package com.comme.comme.user;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Transactional(readOnly = true)
+public interface RegistrationEventRepository extends JpaRepository<RegistrationEvent, Long> {
+
+    List<RegistrationEvent> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+    List<RegistrationEvent> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(long afterId, long upToId, Pageable pageable);
+
+    @Query("select coalesce(max(e.id), 0) from RegistrationEvent e")
+    long findMaxId();
+
+    @Transactional
+    @Modifying
+    @Query("delete from RegistrationEvent e where e.createdAt < :createdBefore")
+    int deleteCreatedBefore(@Param("createdBefore") long createdBefore);
+}
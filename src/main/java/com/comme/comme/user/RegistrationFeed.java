@@ -0,0 +1,434 @@
+package com.comme.comme.user;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// One dispatcher thread reads the registration_event outbox of every shard, turns each poll into a single SSE
+// event and hands it to the bounded queue of every subscriber; a small sender pool drains those queues.
+// Rows commit out of id order, so each shard keeps a low-water cursor plus the ids already sent above it; a missing id
+// only stops holding the cursor back once a later row is older than the settle window (its transaction rolled back).
+// Event ids are the per-shard cursors joined by '.': Last-Event-ID resumes at the cursor and may repeat rows sent above it.
+@Component
+public class RegistrationFeed implements MeterBinder {
+
+    private static final Log logger = LogFactory.getLog(RegistrationFeed.class);
+
+    private static final String EVENT_NAME = "registrations";
+
+    public enum SlowConsumerPolicy {
+        DISCONNECT, DROP_OLDEST
+    }
+
+    private final RegistrationEventRepository registrationEventRepository;
+
+    private final UserShards userShards;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration pollInterval;
+    private final Duration settle;
+    private final int batchSize;
+    private final int bufferCapacity;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final Duration heartbeatInterval;
+    private final Duration timeout;
+    private final Duration retention;
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("registration-feed-"));
+
+    private final ExecutorService senders;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // Per shard, every outbox id up to the cursor has been sent or given up on; only touched on the dispatcher thread
+    private final long[] cursors;
+
+    // Per shard, ids above the cursor that were already sent while a lower id was still open
+    private final List<NavigableSet<Long>> sentAhead = new ArrayList<>();
+
+    private boolean cursorsLoaded;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private final AtomicLong dispatchedEvents = new AtomicLong();
+    private final AtomicLong dispatchedBatches = new AtomicLong();
+    private final AtomicLong droppedBatches = new AtomicLong();
+    private final AtomicLong slowDisconnects = new AtomicLong();
+
+    public RegistrationFeed(RegistrationEventRepository registrationEventRepository, UserShards userShards, ObjectMapper objectMapper,
+                            @Value("${comme.users.feed.poll-interval:200ms}") Duration pollInterval,
+                            @Value("${comme.users.feed.settle:500ms}") Duration settle,
+                            @Value("${comme.users.feed.batch-size:500}") int batchSize,
+                            @Value("${comme.users.feed.buffer-capacity:64}") int bufferCapacity,
+                            @Value("${comme.users.feed.slow-consumer:disconnect}") SlowConsumerPolicy slowConsumerPolicy,
+                            @Value("${comme.users.feed.sender-threads:4}") int senderThreads,
+                            @Value("${comme.users.feed.heartbeat-interval:15s}") Duration heartbeatInterval,
+                            @Value("${comme.users.feed.timeout:30m}") Duration timeout,
+                            @Value("${comme.users.feed.retention:1d}") Duration retention) {
+        this.registrationEventRepository = registrationEventRepository;
+        this.userShards = userShards;
+        this.objectMapper = objectMapper;
+        this.pollInterval = pollInterval;
+        this.settle = settle;
+        this.batchSize = batchSize;
+        this.bufferCapacity = bufferCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeout = timeout;
+        this.retention = retention;
+        this.senders = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("registration-feed-send-"));
+        this.cursors = new long[userShards.count()];
+        for (int shard = 0; shard < cursors.length; shard++) {
+            sentAhead.add(new TreeSet<>());
+        }
+    }
+
+    // Cursors are loaded on the dispatcher thread, so startup does not wait for the database
+    @PostConstruct
+    void start() {
+        dispatcher.execute(this::loadCursors);
+        dispatcher.scheduleWithFixedDelay(this::dispatchSafely, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        dispatcher.scheduleWithFixedDelay(this::purgeSafely, 1, 60, TimeUnit.MINUTES);
+    }
+
+    private void loadCursors() {
+        if (cursorsLoaded) {
+            return;
+        }
+        for (int shard = 0; shard < cursors.length; shard++) {
+            cursors[shard] = userShards.onShard(shard, registrationEventRepository::findMaxId);
+        }
+        cursorsLoaded = true;
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(Subscriber::close);
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::discard);
+        emitter.onTimeout(subscriber::discard);
+        emitter.onError(e -> subscriber.discard());
+        long[] resumeFrom = parseEventId(lastEventId);
+        // Spring commits the response headers on the first write, so without this a quiet feed leaves the client
+        // waiting for a status line until the first batch or heartbeat
+        subscriber.offer(Batch.OPEN);
+        // Replay and registration run on the dispatcher thread, so no live batch can slip in between them
+        dispatcher.execute(() -> {
+            try {
+                loadCursors();
+                if (resumeFrom != null) {
+                    replay(subscriber, resumeFrom);
+                }
+                subscribers.add(subscriber);
+            } catch (RuntimeException e) {
+                subscriber.close();
+            }
+        });
+        return emitter;
+    }
+
+    // Registrations trigger an early poll instead of waiting out the interval
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (!event.isRemoved() && wakeUpPending.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                wakeUpPending.set(false);
+                dispatchSafely();
+            });
+        }
+    }
+
+    private void dispatchSafely() {
+        try {
+            loadCursors();
+            boolean more;
+            do {
+                more = dispatch();
+            } while (more);
+        } catch (RuntimeException e) {
+            logger.warn("Registration feed dispatch failed", e);
+        }
+    }
+
+    // Returns true when some shard had a full batch of new rows waiting, so the caller polls again right away
+    private boolean dispatch() {
+        long settledBefore = System.currentTimeMillis() - settle.toMillis();
+        List<RegistrationEvent> events = new ArrayList<>();
+        boolean more = false;
+        for (int shard = 0; shard < cursors.length; shard++) {
+            long after = cursors[shard];
+            List<RegistrationEvent> shardEvents = userShards.onShard(shard, () -> registrationEventRepository
+                    .findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, batchSize)));
+            NavigableSet<Long> sent = sentAhead.get(shard);
+            long settledUpTo = after;
+            int fresh = 0;
+            for (RegistrationEvent event : shardEvents) {
+                if (sent.add(event.getId())) {
+                    events.add(event);
+                    fresh++;
+                }
+                if (event.getCreatedAt() <= settledBefore) {
+                    settledUpTo = event.getId();
+                }
+            }
+            cursors[shard] = advance(after, sent, settledUpTo);
+            more |= fresh > 0 && shardEvents.size() == batchSize;
+        }
+        if (events.isEmpty()) {
+            return false;
+        }
+        Batch batch = toBatch(cursors, events);
+        dispatchedBatches.incrementAndGet();
+        dispatchedEvents.addAndGet(events.size());
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(batch);
+        }
+        return more;
+    }
+
+    // Moves past sent ids while they are contiguous; a missing id is skipped only when some row at or above it is
+    // older than the settle window, since ids are taken in order and that row's transaction started after the gap's
+    private static long advance(long cursor, NavigableSet<Long> sent, long settledUpTo) {
+        Long next;
+        while ((next = sent.ceiling(cursor + 1)) != null && (next == cursor + 1 || next <= settledUpTo)) {
+            cursor = next;
+            sent.remove(next);
+        }
+        return cursor;
+    }
+
+    private void replay(Subscriber subscriber, long[] resumeFrom) {
+        long[] positions = resumeFrom.clone();
+        for (int shard = 0; shard < positions.length; shard++) {
+            int current = shard;
+            long upTo = cursors[shard];
+            while (positions[shard] < upTo) {
+                long after = positions[shard];
+                List<RegistrationEvent> events = userShards.onShard(current, () -> registrationEventRepository
+                        .findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(after, upTo, PageRequest.of(0, batchSize)));
+                if (events.isEmpty()) {
+                    break;
+                }
+                positions[shard] = events.get(events.size() - 1).getId();
+                if (!subscriber.offer(toBatch(positions, events))) {
+                    return;
+                }
+            }
+            positions[shard] = Math.max(positions[shard], upTo);
+        }
+        // Rows already sent above a cursor were missed too; the cursor itself does not move past them yet
+        for (int shard = 0; shard < positions.length; shard++) {
+            NavigableSet<Long> sent = sentAhead.get(shard);
+            if (sent.isEmpty()) {
+                continue;
+            }
+            long after = cursors[shard];
+            long upTo = sent.last();
+            List<RegistrationEvent> events = userShards.onShard(shard, () -> registrationEventRepository
+                    .findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(after, upTo, PageRequest.of(0, sent.size())))
+                    .stream()
+                    .filter(event -> sent.contains(event.getId()))
+                    .collect(Collectors.toList());
+            if (!events.isEmpty() && !subscriber.offer(toBatch(positions, events))) {
+                return;
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(Batch.HEARTBEAT);
+        }
+    }
+
+    private void purgeSafely() {
+        try {
+            long createdBefore = System.currentTimeMillis() - retention.toMillis();
+            userShards.forEachShard(shard -> registrationEventRepository.deleteCreatedBefore(createdBefore));
+        } catch (RuntimeException e) {
+            logger.warn("Registration outbox purge failed", e);
+        }
+    }
+
+    private Batch toBatch(long[] positions, List<RegistrationEvent> events) {
+        try {
+            List<UserSummary> users = events.stream().map(RegistrationEvent::toSummary).collect(Collectors.toList());
+            return new Batch(eventId(positions), objectMapper.writeValueAsString(users));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String eventId(long[] positions) {
+        return Arrays.stream(positions).mapToObj(Long::toString).collect(Collectors.joining("."));
+    }
+
+    // null for a missing or foreign id (e.g. issued before the shard count changed): the client then only gets live events
+    private long[] parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return null;
+        }
+        String[] parts = lastEventId.split("\\.");
+        if (parts.length != cursors.length) {
+            return null;
+        }
+        try {
+            return Arrays.stream(parts).mapToLong(Long::parseLong).toArray();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private int bufferedBatches() {
+        return subscribers.stream().mapToInt(subscriber -> subscriber.queue.size()).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("comme.feed.subscribers", subscribers, Set::size).register(registry);
+        Gauge.builder("comme.feed.buffered.batches", this, RegistrationFeed::bufferedBatches).register(registry);
+        FunctionCounter.builder("comme.feed.events", dispatchedEvents, AtomicLong::get).register(registry);
+        FunctionCounter.builder("comme.feed.batches", dispatchedBatches, AtomicLong::get).register(registry);
+        FunctionCounter.builder("comme.feed.dropped.batches", droppedBatches, AtomicLong::get).register(registry);
+        FunctionCounter.builder("comme.feed.slow.disconnects", slowDisconnects, AtomicLong::get).register(registry);
+    }
+
+    private static final class Batch {
+
+        private static final Batch HEARTBEAT = new Batch(null, null);
+
+        private static final Batch OPEN = new Batch(null, null);
+
+        private final String id;
+
+        private final String json;
+
+        private Batch(String id, String json) {
+            this.id = id;
+            this.json = json;
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(bufferCapacity);
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // Returns false once the subscriber has been closed
+        private boolean offer(Batch batch) {
+            if (closed) {
+                return false;
+            }
+            if (!queue.offer(batch)) {
+                if (batch == Batch.HEARTBEAT) {
+                    return true;
+                }
+                if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                    slowDisconnects.incrementAndGet();
+                    close();
+                    return false;
+                }
+                while (!queue.offer(batch)) {
+                    if (queue.poll() != null) {
+                        droppedBatches.incrementAndGet();
+                    }
+                }
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            try {
+                Batch batch;
+                while (!closed && (batch = queue.poll()) != null) {
+                    send(batch);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The container already knows and completes the request itself; completing it here as well can
+                // reach whichever request has since been given the recycled response
+                discard();
+            } finally {
+                draining.set(false);
+                if (!closed && !queue.isEmpty() && draining.compareAndSet(false, true)) {
+                    senders.execute(this::drain);
+                }
+            }
+        }
+
+        private void send(Batch batch) throws IOException {
+            if (batch == Batch.HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else if (batch == Batch.OPEN) {
+                emitter.send(SseEmitter.event().comment("connected"));
+            } else {
+                emitter.send(SseEmitter.event().id(batch.id).name(EVENT_NAME).data(batch.json, MediaType.APPLICATION_JSON));
+            }
+        }
+
+        private void close() {
+            discard();
+            emitter.complete();
+        }
+
+        // Stops sending without touching the emitter, for requests the container has already finished
+        private void discard() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+        }
+    }
+}
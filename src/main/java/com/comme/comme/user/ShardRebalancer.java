@@ -0,0 +1,86 @@
+package com.comme.comme.user;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Offline tool for changing the shard count. With the application stopped:
+//   java -cp comme.jar -Dloader.main=com.comme.comme.user.ShardRebalancer org.springframework.boot.loader.PropertiesLauncher \
+//        --from=<url>,<url> --to=<url>,<url>,<url> [--username=sa] [--password=]
+// then start it again with comme.users.sharding.shards listing the --to urls in the same order.
+// Every target needs the schema already. Rows are copied before they are deleted and existing usernames are
+// skipped, so an interrupted run can simply be repeated. Ids are kept, so they stay unique across shards.
+public class ShardRebalancer {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final List<String> fromUrls;
+
+    private final List<String> toUrls;
+
+    private final Map<String, JdbcTemplate> databases = new HashMap<>();
+
+    public ShardRebalancer(List<String> fromUrls, List<String> toUrls, String username, String password) {
+        this.fromUrls = fromUrls;
+        this.toUrls = toUrls;
+        for (String url : fromUrls) {
+            databases.computeIfAbsent(url, u -> new JdbcTemplate(new DriverManagerDataSource(u, username, password)));
+        }
+        for (String url : toUrls) {
+            databases.computeIfAbsent(url, u -> new JdbcTemplate(new DriverManagerDataSource(u, username, password)));
+        }
+    }
+
+    // Returns the number of users that changed shard
+    public long run() {
+        long moved = 0;
+        for (String sourceUrl : fromUrls) {
+            JdbcTemplate source = databases.get(sourceUrl);
+            long cursor = 0;
+            List<Map<String, Object>> rows;
+            do {
+                rows = source.queryForList("select id, username, surname, password, image from user where id > ? order by id limit ?",
+                        cursor, CHUNK_SIZE);
+                for (Map<String, Object> row : rows) {
+                    String username = (String) row.get("username");
+                    String targetUrl = toUrls.get(UserShards.shardOf(username, toUrls.size()));
+                    if (!targetUrl.equals(sourceUrl)) {
+                        copy(row, databases.get(targetUrl));
+                        source.update("delete from user where id = ?", row.get("id"));
+                        moved++;
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    cursor = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+                }
+            } while (rows.size() == CHUNK_SIZE);
+        }
+        return moved;
+    }
+
+    private static void copy(Map<String, Object> row, JdbcTemplate target) {
+        Integer existing = target.queryForObject("select count(*) from user where username = ?", Integer.class, row.get("username"));
+        if (existing != null && existing == 0) {
+            target.update("insert into user (id, username, surname, password, image) values (?, ?, ?, ?, ?)",
+                    row.get("id"), row.get("username"), row.get("surname"), row.get("password"), row.get("image"));
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = Arrays.stream(args)
+                .filter(arg -> arg.startsWith("--") && arg.contains("="))
+                .collect(Collectors.toMap(arg -> arg.substring(2, arg.indexOf('=')), arg -> arg.substring(arg.indexOf('=') + 1)));
+        if (!options.containsKey("from") || !options.containsKey("to")) {
+            System.err.println("Usage: ShardRebalancer --from=<url>[,<url>...] --to=<url>[,<url>...] [--username=sa] [--password=]");
+            System.exit(2);
+        }
+        ShardRebalancer rebalancer = new ShardRebalancer(Arrays.asList(options.get("from").split(",")),
+                Arrays.asList(options.get("to").split(",")), options.getOrDefault("username", "sa"), options.getOrDefault("password", ""));
+        System.out.println("Moved " + rebalancer.run() + " users");
+    }
+}
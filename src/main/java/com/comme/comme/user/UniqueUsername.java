@@ -11,7 +11,7 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface UniqueUsername {
-    String message() default "";
+    String message() default "{comme.constraints.username.UniqueUsername.message}";
 
     Class<?>[] groups() default {};
 
@@ -1,6 +1,8 @@
 package com.comme.comme.user;
 
+import com.comme.comme.shared.StageTimer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
@@ -10,12 +12,27 @@ public class UniqueUsernameValidator implements ConstraintValidator<UniqueUserna
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    StageTimer stageTimer;
+
+    @Autowired
+    UserShards userShards;
+
+    @Value("${comme.users.registration.unique-precheck:true}")
+    boolean precheck;
+
     @Override
     public boolean isValid(String value, ConstraintValidatorContext constraintValidatorContext) {
-        User inDB = userRepository.findByUsername(value);
-        if(inDB == null){
+        return stageTimer.time("unique-username", () -> isFree(value));
+    }
+
+    private boolean isFree(String value) {
+        if(!precheck || value == null || !usernameIndex.mightExist(value)){
             return true;
         }
-        return false;
+        return !userShards.forUsername(value, () -> userRepository.existsByUsername(value));
     }
 }
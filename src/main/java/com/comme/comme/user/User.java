@@ -5,9 +5,14 @@ import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
@@ -20,20 +25,25 @@ import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Data
 @Entity
+@EntityListeners(UserEntityListener.class)
+@Table(uniqueConstraints = @UniqueConstraint(name = DuplicateUsernameException.USERNAME_CONSTRAINT, columnNames = "username"))
 public class User implements UserDetails {
     private static final long serialVersionUID = SpringSecurityCoreVersion.SERIAL_VERSION_UID;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     @JsonView(Views.Base.class)
     private long id;
 
     @NotNull
     @Size(min = 4, max = 255)
-    @UniqueUsername
+    @UniqueUsername(groups = RegistrationChecks.class)
     @JsonView(Views.Base.class)
     private String username;
 
@@ -50,6 +60,13 @@ public class User implements UserDetails {
     @JsonView(Views.Base.class)
     private String image;
 
+    // Username as last loaded or saved, so a rename can evict caches keyed by the old name
+    @javax.persistence.Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private String persistedUsername;
+
     @Override
     @Transient
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -0,0 +1,45 @@
+package com.comme.comme.user;
+
+import com.comme.comme.shared.FastPathSerializer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+
+import java.io.IOException;
+
+// Writes the Views.Base fields of User; any view extending Base sees exactly these fields too
+public class UserBaseViewSerializer extends FastPathSerializer<User> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString SURNAME = new SerializedString("surname");
+    private static final SerializableString IMAGE = new SerializedString("image");
+
+    public UserBaseViewSerializer(JsonSerializer<?> fallback) {
+        super(User.class, fallback);
+    }
+
+    // Only the exact Base view: wider views such as Sensitive may carry fields this serializer does not write
+    @Override
+    protected boolean supports(Class<?> activeView) {
+        return activeView == Views.Base.class;
+    }
+
+    @Override
+    protected void writeFields(User value, JsonGenerator generator) throws IOException {
+        generator.writeFieldName(ID);
+        generator.writeNumber(value.getId());
+        generator.writeFieldName(USERNAME);
+        generator.writeString(value.getUsername());
+        generator.writeFieldName(SURNAME);
+        generator.writeString(value.getSurname());
+        generator.writeFieldName(IMAGE);
+        generator.writeString(value.getImage());
+    }
+
+    @Override
+    protected FastPathSerializer<User> withFallback(JsonSerializer<?> fallback) {
+        return new UserBaseViewSerializer(fallback);
+    }
+}
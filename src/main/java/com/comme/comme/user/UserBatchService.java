@@ -0,0 +1,241 @@
+package com.comme.comme.user;
+
+import com.comme.comme.configuration.HashingCapacityExceededException;
+import com.comme.comme.configuration.PasswordHashingExecutor;
+import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.BatchItemResult;
+import com.comme.comme.shared.BatchResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+@Service
+public class UserBatchService {
+
+    private static final int IN_CLAUSE_LIMIT = 1000;
+
+    private final UserRepository userRepository;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final Validator validator;
+
+    private final UsernameIndex usernameIndex;
+
+    private final UserShards userShards;
+
+    private final RegistrationEventRepository registrationEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxSize;
+
+    private final int chunkSize;
+
+    private final int hashingWindow;
+
+    public UserBatchService(UserRepository userRepository, PasswordEncoder passwordEncoder, PasswordHashingExecutor passwordHashingExecutor,
+                            Validator validator, UsernameIndex usernameIndex, UserShards userShards,
+                            RegistrationEventRepository registrationEventRepository, PlatformTransactionManager transactionManager,
+                            @Value("${comme.users.batch.max-size:10000}") int maxSize,
+                            @Value("${comme.users.batch.chunk-size:500}") int chunkSize,
+                            @Value("${comme.users.batch.hashing-parallelism:0}") int hashingParallelism) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.validator = validator;
+        this.usernameIndex = usernameIndex;
+        this.userShards = userShards;
+        this.registrationEventRepository = registrationEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize;
+        this.chunkSize = chunkSize;
+        this.hashingWindow = hashingWindow(hashingParallelism);
+    }
+
+    static int hashingWindow(int hashingParallelism) {
+        return hashingParallelism > 0 ? hashingParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public BatchResponse saveAll(List<User> users, String url) {
+        if (users.size() > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Batch must not exceed " + maxSize + " users");
+        }
+        return new BatchResponse(Arrays.asList(save(users, url, password -> false, hashingWindow)));
+    }
+
+    // Shared with UserImportService, which may keep passwords that are already encoded
+    BatchItemResult[] save(List<User> users, String url, Predicate<String> isEncoded, int hashingWindow) {
+        BatchItemResult[] results = new BatchItemResult[users.size()];
+
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> usernamesInBatch = new HashSet<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (user == null) {
+                results[i] = validationFailure(i, new HashMap<>(), url);
+                continue;
+            }
+            Map<String, String> validationErrors = validate(user);
+            if (user.getPassword() != null && isEncoded.test(user.getPassword())) {
+                validationErrors.remove("password");
+            }
+            if (validationErrors.isEmpty() && !usernamesInBatch.add(user.getUsername())) {
+                validationErrors.put("username", DuplicateUsernameException.usernameInUseMessage());
+            }
+            if (validationErrors.isEmpty()) {
+                accepted.add(i);
+            } else {
+                results[i] = validationFailure(i, validationErrors, url);
+            }
+        }
+
+        Set<String> taken = findExistingUsernames(accepted.stream()
+                .map(i -> users.get(i).getUsername())
+                .filter(usernameIndex::mightExist)
+                .collect(Collectors.toList()));
+        List<User> toSave = new ArrayList<>();
+        List<Integer> toSaveIndexes = new ArrayList<>();
+        for (Integer i : accepted) {
+            User user = users.get(i);
+            if (taken.contains(user.getUsername())) {
+                results[i] = validationFailure(i, usernameInUse(), url);
+            } else {
+                toSave.add(user);
+                toSaveIndexes.add(i);
+            }
+        }
+
+        hash(toSave.stream().filter(user -> !isEncoded.test(user.getPassword())).collect(Collectors.toList()), hashingWindow);
+
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int position = 0; position < toSave.size(); position++) {
+            positionsByShard.computeIfAbsent(userShards.shardOf(toSave.get(position).getUsername()), shard -> new ArrayList<>()).add(position);
+        }
+        positionsByShard.forEach((shard, positions) -> {
+            List<User> shardUsers = positions.stream().map(toSave::get).collect(Collectors.toList());
+            List<Integer> shardIndexes = positions.stream().map(toSaveIndexes::get).collect(Collectors.toList());
+            for (int from = 0; from < shardUsers.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, shardUsers.size());
+                List<User> chunk = shardUsers.subList(from, to);
+                List<Integer> indexes = shardIndexes.subList(from, to);
+                userShards.onShard(shard, () -> {
+                    persistChunk(chunk, indexes, results, url);
+                    return null;
+                });
+            }
+        });
+        return results;
+    }
+
+    // BCrypt dominates a batch. It goes through the same bounded executor as sign-ups and logins, at most
+    // hashingWindow tasks at a time, and waits out a full queue instead of failing the batch.
+    private void hash(List<User> users, int hashingWindow) {
+        for (int start = 0; start < users.size(); start += hashingWindow) {
+            List<CompletableFuture<User>> window = new ArrayList<>(hashingWindow);
+            for (User user : users.subList(start, Math.min(users.size(), start + hashingWindow))) {
+                window.add(submitHash(user));
+            }
+            window.forEach(CompletableFuture::join);
+        }
+    }
+
+    private CompletableFuture<User> submitHash(User user) {
+        while (true) {
+            try {
+                return passwordHashingExecutor.submit(() -> {
+                    user.setPassword(passwordEncoder.encode(user.getPassword()));
+                    return user;
+                });
+            } catch (HashingCapacityExceededException e) {
+                pause(e.getRetryAfter(), e);
+            }
+        }
+    }
+
+    private static void pause(Duration retryAfter, HashingCapacityExceededException cause) {
+        try {
+            Thread.sleep(retryAfter.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private void persistChunk(List<User> chunk, List<Integer> indexes, BatchItemResult[] results, String url) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> registrationEventRepository.saveAll(
+                    userRepository.saveAll(chunk).stream().map(RegistrationEvent::of).collect(Collectors.toList())));
+            for (Integer i : indexes) {
+                results[i] = BatchItemResult.success(i, "User saved");
+            }
+        } catch (DataIntegrityViolationException chunkFailure) {
+            // A concurrent registration took one of the names; isolate it by saving one at a time
+            for (int j = 0; j < chunk.size(); j++) {
+                User user = chunk.get(j);
+                int i = indexes.get(j);
+                user.setId(0);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> registrationEventRepository.save(RegistrationEvent.of(userRepository.save(user))));
+                    results[i] = BatchItemResult.success(i, "User saved");
+                } catch (DataIntegrityViolationException itemFailure) {
+                    results[i] = validationFailure(i, usernameInUse(), url);
+                }
+            }
+        }
+    }
+
+    private Set<String> findExistingUsernames(List<String> candidates) {
+        Set<String> existing = new HashSet<>();
+        Map<Integer, List<String>> candidatesByShard = candidates.stream().collect(Collectors.groupingBy(userShards::shardOf));
+        candidatesByShard.forEach((shard, shardCandidates) -> userShards.onShard(shard, () -> {
+            for (int from = 0; from < shardCandidates.size(); from += IN_CLAUSE_LIMIT) {
+                existing.addAll(userRepository.findExistingUsernames(
+                        shardCandidates.subList(from, Math.min(from + IN_CLAUSE_LIMIT, shardCandidates.size()))));
+            }
+            return null;
+        }));
+        return existing;
+    }
+
+    private Map<String, String> validate(User user) {
+        Map<String, String> validationErrors = new HashMap<>();
+        for (ConstraintViolation<User> violation : validator.validate(user)) {
+            validationErrors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return validationErrors;
+    }
+
+    private static BatchItemResult validationFailure(int index, Map<String, String> validationErrors, String url) {
+        ApiError apiError = new ApiError(400, "Validation error", url);
+        apiError.setValidationErrors(validationErrors);
+        return BatchItemResult.failure(index, apiError);
+    }
+
+    private static Map<String, String> usernameInUse() {
+        return new HashMap<>(Collections.singletonMap("username", DuplicateUsernameException.usernameInUseMessage()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.comme.comme.user;
+
+import lombok.Getter;
+
+@Getter
+public class UserChangedEvent {
+
+    private final UserSummary user;
+
+    private final boolean removed;
+
+    // Set when the save renamed the user; caches keyed by username must drop this key as well
+    private final String previousUsername;
+
+    public UserChangedEvent(UserSummary user, boolean removed) {
+        this(user, removed, null);
+    }
+
+    public UserChangedEvent(UserSummary user, boolean removed, String previousUsername) {
+        this.user = user;
+        this.removed = removed;
+        this.previousUsername = previousUsername;
+    }
+
+    public String getUsername() {
+        return user.getUsername();
+    }
+}
@@ -1,18 +1,32 @@
 package com.comme.comme.user;
 
 import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.BatchResponse;
 import com.comme.comme.shared.GenericResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.groups.Default;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class UserController {
@@ -20,10 +34,100 @@ public class UserController {
     @Autowired
     UserService userService;
 
+    @Autowired
+    UserBatchService userBatchService;
+
+    @Autowired
+    UserQueryService userQueryService;
+
+    @Autowired
+    UserSuggestionIndex userSuggestionIndex;
+
+    @Autowired
+    RegistrationFeed registrationFeed;
+
+    @Autowired
+    UserImportService userImportService;
+
+    @Autowired
+    UserExportService userExportService;
+
+    @Autowired
+    UserProfileCache userProfileCache;
+
     @PostMapping("/api/1.0/users")
-    public GenericResponse createUser(@Valid @RequestBody User user){
-        userService.save(user);
-        return new GenericResponse("User saved");
+    public CompletableFuture<GenericResponse> createUser(@Validated({Default.class, RegistrationChecks.class}) @RequestBody User user){
+        return userService.saveAsync(user).thenApply(saved -> new GenericResponse("User saved"));
+    }
+
+    @PostMapping("/api/1.0/users/batch")
+    public BatchResponse createUsers(@RequestBody List<User> users, HttpServletRequest request){
+        return userBatchService.saveAll(users, request.getServletPath());
+    }
+
+    // Written on the request thread rather than as a StreamingResponseBody: an import can outlast the async request timeout
+    @PostMapping(value = "/api/1.0/users/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public void importUsers(@RequestParam(defaultValue = "0") long from,
+                            @RequestParam(defaultValue = "false") boolean encoded,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        userImportService.checkEncodedPasswordsAllowed(encoded);
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? UserImportService.Format.NDJSON : UserImportService.Format.CSV;
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userImportService.importUsers(request.getInputStream(), format, from, encoded, request.getServletPath(), response.getOutputStream());
+    }
+
+    @GetMapping(value = "/api/1.0/users/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportUsers(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, defaultValue = "") String acceptEncoding,
+                            HttpServletResponse response) throws IOException {
+        boolean gzip = acceptEncoding.contains("gzip");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        userExportService.export(response.getOutputStream(), gzip);
+    }
+
+    @GetMapping("/api/1.0/users")
+    public UserPage getUsers(@RequestParam(defaultValue = "0") long after,
+                             @RequestParam(defaultValue = "") String username,
+                             @RequestParam(defaultValue = "") String surname,
+                             @RequestParam(defaultValue = "20") int size){
+        return userQueryService.page(after, username, surname, size);
+    }
+
+    @GetMapping(value = "/api/1.0/users", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam(defaultValue = "0") long after,
+                                                             @RequestParam(defaultValue = "") String username,
+                                                             @RequestParam(defaultValue = "") String surname){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> userQueryService.stream(after, username, surname, out));
+    }
+
+    @GetMapping("/api/1.0/users/suggest")
+    public List<UserSummary> suggestUsers(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit){
+        return userSuggestionIndex.suggest(prefix, limit);
+    }
+
+    @GetMapping(value = "/api/1.0/users/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter registrationFeed(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId){
+        return registrationFeed.subscribe(lastEventId);
+    }
+
+    // Under its own segment so usernames can never shadow the fixed /api/1.0/users/... routes
+    @GetMapping("/api/1.0/users/by-name/{username}")
+    public ResponseEntity<byte[]> getUser(@PathVariable String username, WebRequest request){
+        UserProfileCache.Profile profile = userProfileCache.get(username);
+        if (request.checkNotModified(profile.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(profile.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(profile.getJson());
     }
 
     @ExceptionHandler({MethodArgumentNotValidException.class})
@@ -41,4 +145,16 @@ public class UserController {
 
         return apiError;
     }
+
+    @ExceptionHandler({DuplicateUsernameException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiError handleDuplicateUsernameException(DuplicateUsernameException exception, HttpServletRequest request){
+        ApiError apiError = new ApiError(400, "Validation error", request.getServletPath());
+
+        Map<String, String> validationErrors = new HashMap<>();
+        validationErrors.put("username", DuplicateUsernameException.usernameInUseMessage());
+        apiError.setValidationErrors(validationErrors);
+
+        return apiError;
+    }
 }
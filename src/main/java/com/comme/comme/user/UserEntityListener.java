@@ -0,0 +1,41 @@
+package com.comme.comme.user;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+// Created by Hibernate through Spring's bean container, so repository writes outside UserService are covered too
+public class UserEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    void onLoad(User user) {
+        user.setPersistedUsername(user.getUsername());
+    }
+
+    @PostPersist
+    @PostUpdate
+    void onSave(User user) {
+        String previous = user.getPersistedUsername();
+        boolean renamed = previous != null && !previous.equals(user.getUsername());
+        eventPublisher.publishEvent(new UserChangedEvent(summaryOf(user), false, renamed ? previous : null));
+        user.setPersistedUsername(user.getUsername());
+    }
+
+    @PostRemove
+    void onRemove(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(summaryOf(user), true));
+    }
+
+    private static UserSummary summaryOf(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), user.getSurname(), user.getImage());
+    }
+}
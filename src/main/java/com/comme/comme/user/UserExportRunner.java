@@ -0,0 +1,48 @@
+package com.comme.comme.user;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// java -jar comme.jar --spring.main.web-application-type=none --export-users=users.ndjson.gz
+// Writes the export (gzipped when the file name ends in .gz) and exits instead of serving requests.
+@Component
+public class UserExportRunner implements ApplicationRunner {
+
+    private static final Log logger = LogFactory.getLog(UserExportRunner.class);
+
+    private static final String OPTION = "export-users";
+
+    private final UserExportService userExportService;
+
+    private final ConfigurableApplicationContext context;
+
+    public UserExportRunner(UserExportService userExportService, ConfigurableApplicationContext context) {
+        this.userExportService = userExportService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!args.containsOption(OPTION) || args.getOptionValues(OPTION).isEmpty()) {
+            return;
+        }
+        Path file = Paths.get(args.getOptionValues(OPTION).get(0));
+        long exported;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            exported = userExportService.export(out, file.getFileName().toString().endsWith(".gz"));
+        }
+        logger.info("Exported " + exported + " users to " + file.toAbsolutePath());
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
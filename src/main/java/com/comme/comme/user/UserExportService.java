@@ -0,0 +1,74 @@
+package com.comme.comme.user;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+// Dumps the Views.Base fields of every user as NDJSON. Rows go straight from a forward-only JDBC cursor to the
+// output without becoming entities, so no more than one fetch of rows is in memory however large the table is.
+@Service
+public class UserExportService {
+
+    private static final String EXPORT_QUERY = "select id, username, surname, image from user order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final UserShards userShards;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int fetchSize;
+
+    public UserExportService(DataSource dataSource, ObjectMapper objectMapper, UserShards userShards,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${comme.users.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.userShards = userShards;
+        // Some drivers (PostgreSQL) only honour the fetch size with auto-commit off
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    public long export(OutputStream out, boolean gzip) throws IOException {
+        AtomicLong written = new AtomicLong();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip ? new GZIPOutputStream(out, 65536) : out)) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            userShards.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_QUERY, rs -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", rs.getLong(1));
+                    generator.writeStringField("username", rs.getString(2));
+                    generator.writeStringField("surname", rs.getString(3));
+                    generator.writeStringField("image", rs.getString(4));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    if (written.incrementAndGet() % fetchSize == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written.get();
+    }
+}
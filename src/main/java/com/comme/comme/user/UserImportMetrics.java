@@ -0,0 +1,31 @@
+package com.comme.comme.user;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Separate from UserImportService: that one reaches the password encoder and through it the web configuration,
+// which itself waits for the meter registry, so it can't be a MeterBinder
+@Component
+public class UserImportMetrics implements MeterBinder {
+
+    private final AtomicLong importedUsers = new AtomicLong();
+    private final AtomicLong failedLines = new AtomicLong();
+
+    void userImported() {
+        importedUsers.incrementAndGet();
+    }
+
+    void lineFailed() {
+        failedLines.incrementAndGet();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("comme.users.import.imported", importedUsers, AtomicLong::get).register(registry);
+        FunctionCounter.builder("comme.users.import.failed", failedLines, AtomicLong::get).register(registry);
+    }
+}
@@ -0,0 +1,191 @@
+package com.comme.comme.user;
+
+import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.BatchItemResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+// Reads NDJSON or CSV one line at a time and saves it in batches, so memory stays flat however large the input is.
+// Progress and per-line errors are written back as NDJSON while the import runs.
+@Service
+public class UserImportService {
+
+    private static final Pattern BCRYPT = Pattern.compile("\\A\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private final UserBatchService userBatchService;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader userReader;
+
+    private final int hashingWindow;
+
+    private final int batchSize;
+
+    private final boolean allowEncodedPasswords;
+
+    private final UserImportMetrics metrics;
+
+    public UserImportService(UserBatchService userBatchService, ObjectMapper objectMapper, UserImportMetrics metrics,
+                             @Value("${comme.users.import.batch-size:2000}") int batchSize,
+                             @Value("${comme.users.import.hashing-parallelism:0}") int hashingParallelism,
+                             @Value("${comme.users.import.allow-encoded-passwords:false}") boolean allowEncodedPasswords) {
+        this.userBatchService = userBatchService;
+        this.objectMapper = objectMapper;
+        this.userReader = objectMapper.readerFor(User.class);
+        this.hashingWindow = UserBatchService.hashingWindow(hashingParallelism);
+        this.batchSize = batchSize;
+        this.allowEncodedPasswords = allowEncodedPasswords;
+        this.metrics = metrics;
+    }
+
+    public void checkEncodedPasswordsAllowed(boolean encoded) {
+        if (encoded && !allowEncodedPasswords) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Importing encoded passwords is disabled");
+        }
+    }
+
+    public void importUsers(InputStream in, Format format, long from, boolean encoded, String url, OutputStream out) throws IOException {
+        checkEncodedPasswordsAllowed(encoded);
+        Predicate<String> isEncoded = encoded ? password -> BCRYPT.matcher(password).matches() : password -> false;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ImportProgress progress = new ImportProgress(from, 0, 0, false);
+        long line = 0;
+        Map<String, Integer> columns = null;
+        if (format == Format.CSV) {
+            String header = reader.readLine();
+            line++;
+            columns = header == null ? new HashMap<>() : csvColumns(header);
+        }
+        List<User> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (line <= from || text.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                batch.add(format == Format.CSV ? parseCsv(text, columns) : userReader.readValue(text));
+                batchLines.add(line);
+            } catch (IOException | IllegalArgumentException e) {
+                writeLine(out, BatchItemResult.failure((int) line, new ApiError(400, "Malformed line", url)));
+                progress.setFailed(progress.getFailed() + 1);
+                metrics.lineFailed();
+            }
+            if (batch.size() == batchSize) {
+                flush(batch, batchLines, isEncoded, url, progress, out);
+                progress.setCheckpoint(line);
+                writeLine(out, progress);
+            }
+        }
+        flush(batch, batchLines, isEncoded, url, progress, out);
+        progress.setCheckpoint(Math.max(line, from));
+        progress.setDone(true);
+        writeLine(out, progress);
+    }
+
+    private void flush(List<User> batch, List<Long> batchLines, Predicate<String> isEncoded, String url,
+                       ImportProgress progress, OutputStream out) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        BatchItemResult[] results = userBatchService.save(batch, url, isEncoded, hashingWindow);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].getError() == null) {
+                progress.setImported(progress.getImported() + 1);
+                metrics.userImported();
+            } else {
+                results[i].setIndex(batchLines.get(i).intValue());
+                writeLine(out, results[i]);
+                progress.setFailed(progress.getFailed() + 1);
+                metrics.lineFailed();
+            }
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
+
+    private static Map<String, Integer> csvColumns(String header) {
+        List<String> names = splitCsv(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(), i);
+        }
+        return columns;
+    }
+
+    private static User parseCsv(String text, Map<String, Integer> columns) {
+        List<String> values = splitCsv(text);
+        User user = new User();
+        user.setUsername(column(values, columns, "username"));
+        user.setSurname(column(values, columns, "surname"));
+        user.setPassword(column(values, columns, "password"));
+        user.setImage(column(values, columns, "image"));
+        return user;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= values.size() || values.get(index).isEmpty() ? null : values.get(index);
+    }
+
+    // RFC 4180 fields without embedded line breaks: quoted fields may contain commas and doubled quotes
+    private static List<String> splitCsv(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -0,0 +1,21 @@
+package com.comme.comme.user;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class UserPage {
+
+    private List<UserSummary> content;
+
+    // Pass as "after" to fetch the next page; null on the last page
+    private Long next;
+
+    public UserPage(List<UserSummary> content, Long next) {
+        this.content = content;
+        this.next = next;
+    }
+}
@@ -0,0 +1,130 @@
+package com.comme.comme.user;
+
+import com.comme.comme.shared.ExpiringCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Public profiles as ready-to-send JSON bytes with a strong ETag derived from those bytes, so a repeated or
+// conditional GET needs neither the database nor Jackson. Each load registers a stamp under its username and only
+// caches while that stamp is still there; invalidating a username drops its stamp, so a load that raced with an
+// update of that user does not cache the old profile, and updates of other users do not stop it.
+@Component
+public class UserProfileCache implements MeterBinder {
+
+    private final UserRepository userRepository;
+
+    private final UserShards userShards;
+
+    private final ObjectMapper objectMapper;
+
+    private final ExpiringCache<String, Profile> cache;
+
+    // Loads in flight by username; an entry only lives as long as its load
+    private final ConcurrentHashMap<String, Object> loadStamps = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public UserProfileCache(UserRepository userRepository, UserShards userShards, ObjectMapper objectMapper,
+                            @Value("${comme.users.profile-cache.max-size:10000}") int maxSize,
+                            @Value("${comme.users.profile-cache.ttl:10m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        this.objectMapper = objectMapper;
+        this.cache = new ExpiringCache<>(maxSize, ttl);
+    }
+
+    public Profile get(String username) {
+        Profile profile = cache.get(username);
+        if (profile != null) {
+            hits.incrementAndGet();
+            return profile;
+        }
+        misses.incrementAndGet();
+        Object stamp = new Object();
+        loadStamps.put(username, stamp);
+        try {
+            UserSummary user = userShards.forUsername(username, () -> userRepository.findSummaryByUsername(username));
+            if (user == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+            }
+            Profile loaded = new Profile(serialize(user));
+            // Runs under the map's lock for this username, so it cannot interleave with invalidate
+            loadStamps.computeIfPresent(username, (key, current) -> {
+                if (current == stamp) {
+                    cache.put(key, loaded);
+                }
+                return current;
+            });
+            return loaded;
+        } finally {
+            loadStamps.remove(username, stamp);
+        }
+    }
+
+    public void invalidate(String username) {
+        loadStamps.compute(username, (key, stamp) -> {
+            cache.remove(key);
+            return null;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUsername());
+        if (event.getPreviousUsername() != null) {
+            invalidate(event.getPreviousUsername());
+        }
+    }
+
+    private byte[] serialize(UserSummary user) {
+        try {
+            return objectMapper.writeValueAsBytes(user);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("comme.users.profile.cache.hits", hits, AtomicLong::get).register(registry);
+        FunctionCounter.builder("comme.users.profile.cache.misses", misses, AtomicLong::get).register(registry);
+        FunctionCounter.builder("comme.users.profile.cache.evictions", cache, ExpiringCache::evictionCount).register(registry);
+        Gauge.builder("comme.users.profile.cache.size", cache, ExpiringCache::size).register(registry);
+    }
+
+    public static final class Profile {
+
+        private final byte[] json;
+
+        private final String etag;
+
+        private Profile(byte[] json) {
+            this.json = json;
+            this.etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.comme.comme.user;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class UserQueryService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final UserRepository userRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final UserShards userShards;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxPageSize;
+
+    public UserQueryService(UserRepository userRepository, UserShards userShards, ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${comme.users.listing.max-page-size:100}") int maxPageSize) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxPageSize = maxPageSize;
+    }
+
+    public UserPage page(long afterId, String usernamePrefix, String surnamePrefix, int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        List<UserSummary> content = fetchPage(afterId, usernamePrefix, surnamePrefix, limit);
+        Long next = content.size() == limit ? content.get(content.size() - 1).getId() : null;
+        return new UserPage(content, next);
+    }
+
+    // Each shard returns its first `limit` rows after the cursor; the merged first `limit` by id is the global page
+    private List<UserSummary> fetchPage(long afterId, String usernamePrefix, String surnamePrefix, int limit) {
+        return userShards.scatter(shard -> userRepository.findByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWith(
+                        afterId, usernamePrefix, surnamePrefix, PageRequest.of(0, limit, Sort.by("id"))))
+                .stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong(UserSummary::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public void stream(long afterId, String usernamePrefix, String surnamePrefix, OutputStream out) {
+        if (userShards.count() > 1) {
+            streamPages(afterId, usernamePrefix, surnamePrefix, out);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<UserSummary> users = userRepository.streamByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWithOrderByIdAsc(
+                    afterId, usernamePrefix, surnamePrefix);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                Iterator<UserSummary> iterator = users.iterator();
+                for (int written = 1; iterator.hasNext(); written++) {
+                    generator.writeObject(iterator.next());
+                    if (written % FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Sharded stores cannot hold one cursor open per shard and merge them cheaply, so walk scatter-gather pages instead
+    private void streamPages(long afterId, String usernamePrefix, String surnamePrefix, OutputStream out) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            long cursor = afterId;
+            List<UserSummary> page;
+            do {
+                page = fetchPage(cursor, usernamePrefix, surnamePrefix, FLUSH_EVERY);
+                for (UserSummary user : page) {
+                    generator.writeObject(user);
+                }
+                generator.flush();
+                if (!page.isEmpty()) {
+                    cursor = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == FLUSH_EVERY);
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
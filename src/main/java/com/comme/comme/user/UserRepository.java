@@ -1,9 +1,54 @@
 package com.comme.comme.user;
 
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    // Derived queries returning a class-based DTO select the whole entity, password included,
+    // so the summary queries spell out the constructor expression.
+    String SELECT_SUMMARY = "select new com.comme.comme.user.UserSummary(u.id, u.username, u.surname, u.image) from User u ";
+
+    String SUMMARY_FILTER = "where u.id > :afterId"
+            + " and u.username like :#{escape(#usernamePrefix)}% escape :#{escapeCharacter()}"
+            + " and u.surname like :#{escape(#surnamePrefix)}% escape :#{escapeCharacter()}";
+
     User findByUsername(String username);
+
+    boolean existsByUsername(String username);
+
+    @Query(SELECT_SUMMARY + "where u.username = :username")
+    UserSummary findSummaryByUsername(@Param("username") String username);
+
+    @Query("select u.username from User u")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllUsernames();
+
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query(SELECT_SUMMARY + SUMMARY_FILTER)
+    List<UserSummary> findByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWith(
+            @Param("afterId") long afterId, @Param("usernamePrefix") String usernamePrefix,
+            @Param("surnamePrefix") String surnamePrefix, Pageable pageable);
+
+    @Query(SELECT_SUMMARY + SUMMARY_FILTER + " order by u.id asc")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<UserSummary> streamByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWithOrderByIdAsc(
+            @Param("afterId") long afterId, @Param("usernamePrefix") String usernamePrefix,
+            @Param("surnamePrefix") String surnamePrefix);
 }
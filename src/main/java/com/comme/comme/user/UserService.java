@@ -1,10 +1,22 @@
 package com.comme.comme.user;
 
+import com.comme.comme.configuration.PasswordHashingExecutor;
+import com.comme.comme.shared.ServerTiming;
+import com.comme.comme.shared.StageTimer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class UserService {
@@ -13,14 +25,79 @@ public class UserService {
 
     private PasswordEncoder passwordEncoder;
 
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    private Executor insertExecutor;
+
+    private StageTimer stageTimer;
+
+    private UserShards userShards;
+
+    private RegistrationEventRepository registrationEventRepository;
+
+    private TransactionTemplate transactionTemplate;
+
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       PasswordHashingExecutor passwordHashingExecutor,
+                       @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor insertExecutor,
+                       StageTimer stageTimer,
+                       UserShards userShards, RegistrationEventRepository registrationEventRepository,
+                       PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.insertExecutor = insertExecutor;
+        this.stageTimer = stageTimer;
+        this.userShards = userShards;
+        this.registrationEventRepository = registrationEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public User save(User user){
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        user.setPassword(stageTimer.time("hash", () -> passwordEncoder.encode(user.getPassword())));
+        return stageTimer.time("save", () -> insert(user));
+    }
+
+    // The insert continues on the application task executor, so hashing workers never wait on the database
+    public CompletableFuture<User> saveAsync(User user){
+        ServerTiming timing = ServerTiming.current();
+        String rawPassword = user.getPassword();
+        return passwordHashingExecutor.submit(() -> stageTimer.time("hash", timing, () -> passwordEncoder.encode(rawPassword)))
+                .thenApplyAsync(encoded -> stageTimer.time("save", timing, () -> {
+                    user.setPassword(encoded);
+                    return insert(user);
+                }), insertExecutor);
+    }
+
+    // The unique index on username is the source of truth; the validator pre-check is only an early exit.
+    // A new user's registration feed outbox row commits or rolls back together with the user.
+    private User insert(User user){
+        boolean registration = user.getId() == 0;
+        try {
+            return userShards.forUsername(user.getUsername(), () -> transactionTemplate.execute(status -> {
+                User saved = userRepository.save(user);
+                if (registration) {
+                    registrationEventRepository.save(RegistrationEvent.of(saved));
+                }
+                return saved;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateUsernameException.isUsernameConflict(e)) {
+                throw new DuplicateUsernameException(user.getUsername(), e);
+            }
+            throw e;
+        }
+    }
+
+    public User updateImage(String username, String image){
+        return userShards.forUsername(username, () -> transactionTemplate.execute(status -> {
+            User user = userRepository.findByUsername(username);
+            if(user == null){
+                throw new UsernameNotFoundException("User not found");
+            }
+            user.setImage(image);
+            return user;
+        }));
     }
 }
@@ -0,0 +1,108 @@
+package com.comme.comme.user;
+
+import com.comme.comme.configuration.ShardingProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Binds the shard that owns a username to the current thread so ShardRoutingDataSource can pick its pool.
+// Bind before a transaction starts: a transaction keeps the connection of the shard it began on.
+// With sharding disabled there is a single shard and binding has no effect.
+@Component
+public class UserShards implements DisposableBean {
+
+    // Ids of shard i start at i * SHARD_ID_RANGE, so ids stay unique across shards and survive a rebalance
+    public static final long SHARD_ID_RANGE = 1L << 40;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+
+    private final ExecutorService scatterExecutor;
+
+    public UserShards(ShardingProperties properties) {
+        this.count = properties.isEnabled() ? Math.max(1, properties.getShards().size()) : 1;
+        this.scatterExecutor = count > 1 ? Executors.newFixedThreadPool(count, new CustomizableThreadFactory("shard-scatter-")) : null;
+    }
+
+    public static Integer currentShard() {
+        return CURRENT.get();
+    }
+
+    public static int shardOf(String username, int shardCount) {
+        int hash = username.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(String username) {
+        return shardOf(username, count);
+    }
+
+    public <T> T forUsername(String username, Supplier<T> action) {
+        return onShard(username == null ? 0 : shardOf(username), action);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        if (previous != null && previous != shard && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch from shard " + previous + " to " + shard + " inside a transaction");
+        }
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            onShard(current, () -> {
+                action.accept(current);
+                return null;
+            });
+        }
+    }
+
+    // Runs the query on every shard in parallel and returns the results in shard order
+    public <T> List<T> scatter(IntFunction<T> query) {
+        if (count == 1) {
+            List<T> results = new ArrayList<>(1);
+            results.add(onShard(0, () -> query.apply(0)));
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> onShard(current, () -> query.apply(current)), scatterExecutor));
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    @Override
+    public void destroy() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdown();
+        }
+    }
+}
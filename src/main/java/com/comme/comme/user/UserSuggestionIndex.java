@@ -0,0 +1,151 @@
+package com.comme.comme.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Component
+public class UserSuggestionIndex {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private static final Comparator<Match> RANKING = Comparator
+            .comparing((Match match) -> !match.exact)
+            .thenComparing(match -> !match.onUsername)
+            .thenComparingInt(match -> match.termLength)
+            .thenComparing(match -> match.user.getUsername());
+
+    private final UserRepository userRepository;
+
+    private final UserShards userShards;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int scanLimit;
+
+    private final int maxLimit;
+
+    // lower-cased term + separator + username -> indexed user, kept sorted for prefix range scans
+    private final ConcurrentSkipListMap<String, Match> terms = new ConcurrentSkipListMap<>();
+
+    private final Map<String, UserSummary> usersByUsername = new ConcurrentHashMap<>();
+
+    public UserSuggestionIndex(UserRepository userRepository, UserShards userShards, PlatformTransactionManager transactionManager,
+                               @Value("${comme.users.suggest.scan-limit:200}") int scanLimit,
+                               @Value("${comme.users.suggest.max-limit:50}") int maxLimit) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.scanLimit = scanLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @PostConstruct
+    void load() {
+        userShards.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<UserSummary> users = userRepository
+                    .streamByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWithOrderByIdAsc(0, "", "")) {
+                users.forEach(this::put);
+            }
+        }));
+    }
+
+    public List<UserSummary> suggest(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ConcurrentNavigableMap<String, Match> range = terms.subMap(key, true, key + Character.MAX_VALUE, true);
+
+        Map<String, Match> best = new LinkedHashMap<>();
+        int scanned = 0;
+        for (Match match : range.values()) {
+            if (scanned++ == scanLimit) {
+                break;
+            }
+            Match candidate = match.withExact(match.termLength == key.length());
+            best.merge(candidate.user.getUsername(), candidate, (a, b) -> RANKING.compare(a, b) <= 0 ? a : b);
+        }
+        return best.values().stream()
+                .sorted(RANKING)
+                .limit(Math.max(1, Math.min(limit, maxLimit)))
+                .map(match -> match.user)
+                .collect(Collectors.toList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUsername() == null) {
+            return;
+        }
+        if (event.getPreviousUsername() != null) {
+            remove(event.getPreviousUsername());
+        }
+        if (event.isRemoved()) {
+            remove(event.getUsername());
+        } else {
+            put(event.getUser());
+        }
+    }
+
+    private synchronized void put(UserSummary user) {
+        remove(user.getUsername());
+        usersByUsername.put(user.getUsername(), user);
+        addTerm(user.getUsername(), user, true);
+        if (user.getSurname() != null) {
+            addTerm(user.getSurname(), user, false);
+        }
+    }
+
+    private synchronized void remove(String username) {
+        UserSummary previous = usersByUsername.remove(username);
+        if (previous != null) {
+            terms.remove(key(previous.getUsername(), username));
+            if (previous.getSurname() != null) {
+                terms.remove(key(previous.getSurname(), username));
+            }
+        }
+    }
+
+    private void addTerm(String term, UserSummary user, boolean onUsername) {
+        terms.put(key(term, user.getUsername()), new Match(user, onUsername, term.length(), false));
+    }
+
+    private static String key(String term, String username) {
+        return term.toLowerCase(Locale.ROOT) + KEY_SEPARATOR + username;
+    }
+
+    private static final class Match {
+        private final UserSummary user;
+        private final boolean onUsername;
+        private final int termLength;
+        private final boolean exact;
+
+        private Match(UserSummary user, boolean onUsername, int termLength, boolean exact) {
+            this.user = user;
+            this.onUsername = onUsername;
+            this.termLength = termLength;
+            this.exact = exact;
+        }
+
+        private Match withExact(boolean exact) {
+            return exact == this.exact ? this : new Match(user, onUsername, termLength, exact);
+        }
+    }
+}
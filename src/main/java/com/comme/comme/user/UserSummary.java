@@ -0,0 +1,17 @@
+package com.comme.comme.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The Views.Base fields of a User, selected directly by queries that should not load entities
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+
+    private long id;
+    private String username;
+    private String surname;
+    private String image;
+}
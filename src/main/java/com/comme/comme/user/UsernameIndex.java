@@ -0,0 +1,58 @@
+package com.comme.comme.user;
+
+import com.comme.comme.shared.BloomFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.stream.Stream;
+
+@Component
+public class UsernameIndex {
+
+    private final UserRepository userRepository;
+
+    private final UserShards userShards;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BloomFilter usernames;
+
+    private volatile boolean loaded;
+
+    public UsernameIndex(UserRepository userRepository, UserShards userShards, PlatformTransactionManager transactionManager,
+                         @Value("${comme.users.username-index.expected-insertions:1000000}") long expectedInsertions,
+                         @Value("${comme.users.username-index.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.usernames = new BloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    @PostConstruct
+    void load() {
+        userShards.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> all = userRepository.streamAllUsernames()) {
+                all.forEach(usernames::put);
+            }
+        }));
+        loaded = true;
+    }
+
+    public boolean mightExist(String username) {
+        return !loaded || usernames.mightContain(username);
+    }
+
+    // Runs synchronously at persist time, before commit: a name is reported as possibly taken from
+    // the moment it is written, and a rolled back insert only costs one extra lookup later.
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUsername() != null) {
+            usernames.put(event.getUsername());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.comme.comme;
+
+import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.GenericResponse;
+import com.comme.comme.user.User;
+import com.comme.comme.user.Views;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Collections;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ApiSerializationModuleTest {
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final ObjectMapper reflectiveMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    public void serializeUser_inBaseView_matchesReflectiveOutput() throws Exception {
+        User user = createValidUser();
+        user.setId(42);
+        assertThat(objectMapper.writerWithView(Views.Base.class).writeValueAsString(user))
+                .isEqualTo(reflectiveMapper.writerWithView(Views.Base.class).writeValueAsString(user));
+    }
+
+    @Test
+    public void serializeUser_inBaseView_doesNotContainPassword() throws Exception {
+        assertThat(objectMapper.writerWithView(Views.Base.class).writeValueAsString(createValidUser())).doesNotContain("password");
+    }
+
+    @Test
+    public void serializeUser_withNullImage_matchesReflectiveOutput() throws Exception {
+        User user = createValidUser();
+        user.setImage(null);
+        assertThat(objectMapper.writerWithView(Views.Base.class).writeValueAsString(user))
+                .isEqualTo(reflectiveMapper.writerWithView(Views.Base.class).writeValueAsString(user));
+    }
+
+    @Test
+    public void serializeUser_inSensitiveView_matchesReflectiveOutput() throws Exception {
+        User user = createValidUser();
+        user.setId(42);
+        assertThat(objectMapper.writerWithView(Views.Sensitive.class).writeValueAsString(user))
+                .isEqualTo(reflectiveMapper.writerWithView(Views.Sensitive.class).writeValueAsString(user));
+    }
+
+    @Test
+    public void serializeApiError_withValidationErrors_matchesReflectiveOutput() throws Exception {
+        ApiError apiError = new ApiError(400, "Validation error", "/api/1.0/users");
+        apiError.setValidationErrors(Collections.singletonMap("username", "This name is in use"));
+        assertThat(objectMapper.writeValueAsString(apiError)).isEqualTo(reflectiveMapper.writeValueAsString(apiError));
+    }
+
+    @Test
+    public void serializeApiError_withoutMessage_matchesReflectiveOutput() throws Exception {
+        ApiError apiError = new ApiError(404, null, "/api/1.0/avatars/x");
+        assertThat(objectMapper.writeValueAsString(apiError)).isEqualTo(reflectiveMapper.writeValueAsString(apiError));
+    }
+
+    @Test
+    public void serializeGenericResponse_matchesReflectiveOutput() throws Exception {
+        GenericResponse response = new GenericResponse("User saved");
+        assertThat(objectMapper.writeValueAsString(response)).isEqualTo(reflectiveMapper.writeValueAsString(response));
+    }
+}
@@ -0,0 +1,210 @@
+package com.comme.comme;
+
+import com.comme.comme.avatar.AvatarVariant;
+import com.comme.comme.avatar.StoredAvatar;
+import com.comme.comme.avatar.ThumbnailService;
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "comme.avatars.root=target/test-avatars",
+        "comme.avatars.thumbnails.max-pixels=100000"
+})
+@ActiveProfiles("test")
+public class AvatarControllerTest {
+
+    private static final String API_1_0_AVATARS = "/api/1.0/avatars";
+
+    private static final byte[] PNG = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    ThumbnailService thumbnailService;
+
+    @Before
+    public void cleanup(){
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void postAvatar_withoutUserCredentials_receiveUnauthorized(){
+        ResponseEntity<Object> response = testRestTemplate.postForEntity(API_1_0_AVATARS, image(PNG), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postAvatar_withPngImage_imageStoredOnUser(){
+        userService.save(createValidUser());
+        StoredAvatar stored = upload(PNG);
+        assertThat(stored.getImage()).endsWith(".png");
+        assertThat(userRepository.findByUsername("test-user").getImage()).isEqualTo(stored.getImage());
+    }
+
+    @Test
+    public void postAvatar_withSameContentTwice_receiveSameImage(){
+        userService.save(createValidUser());
+        assertThat(upload(PNG).getImage()).isEqualTo(upload(PNG).getImage());
+    }
+
+    @Test
+    public void postAvatar_withUnknownFormat_receiveUnsupportedMediaType(){
+        userService.save(createValidUser());
+        ResponseEntity<Object> response = testRestTemplate.withBasicAuth("test-user", "P@ssw0rd")
+                .postForEntity(API_1_0_AVATARS, image("not an image".getBytes()), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @Test
+    public void getAvatar_withMatchingETag_receiveNotModified(){
+        userService.save(createValidUser());
+        String image = upload(PNG).getImage();
+        String etag = testRestTemplate.getForEntity(API_1_0_AVATARS + "/" + image, byte[].class).getHeaders().getETag();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<byte[]> response = testRestTemplate.exchange(API_1_0_AVATARS + "/" + image, HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    public void getAvatar_withRange_receivePartialContent(){
+        userService.save(createValidUser());
+        String image = upload(PNG).getImage();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=1-3");
+        ResponseEntity<byte[]> response = testRestTemplate.exchange(API_1_0_AVATARS + "/" + image, HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getBody()).isEqualTo(Arrays.copyOfRange(PNG, 1, 4));
+    }
+
+    @Test
+    public void getAvatar_withMalformedImageId_receiveNotFound(){
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_AVATARS + "/not-an-image-id.png", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void getAvatarVariant_withDecodableImage_receiveScaledImage() throws IOException {
+        userService.save(createValidUser());
+        String image = upload(realPng(300, 150)).getImage();
+
+        ResponseEntity<byte[]> response = testRestTemplate.getForEntity(API_1_0_AVATARS + "/" + image + "/small", byte[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(response.getBody()));
+        assertThat(thumbnail.getWidth()).isEqualTo(64);
+        assertThat(thumbnail.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    public void getAvatarVariant_withUnknownVariant_receiveNotFound() throws IOException {
+        userService.save(createValidUser());
+        String image = upload(realPng(10, 10)).getImage();
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_AVATARS + "/" + image + "/huge", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void getAvatarVariant_withUndecodableImage_receiveUnsupportedMediaType(){
+        userService.save(createValidUser());
+        String image = upload(PNG).getImage();
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_AVATARS + "/" + image + "/medium", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @Test
+    public void getAvatarVariant_withTooManyPixels_receivePayloadTooLarge() throws IOException {
+        userService.save(createValidUser());
+        String image = upload(realPng(400, 300)).getImage();
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_1_0_AVATARS + "/" + image + "/medium", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    @Test
+    public void variant_forPreviouslyUndecodableImage_failsWithoutRegenerating() throws Exception {
+        userService.save(createValidUser());
+        String image = upload(PNG).getImage();
+        Throwable first = failure(thumbnailService.variant(image, AvatarVariant.MEDIUM));
+
+        CompletableFuture<Path> second = thumbnailService.variant(image, AvatarVariant.MEDIUM);
+        assertThat(second).isCompletedExceptionally();
+        assertThat(failure(second)).isSameAs(first);
+    }
+
+    @Test
+    public void variant_forUndecodableImage_failsEveryVariantWithSameRejection() throws Exception {
+        userService.save(createValidUser());
+        String image = upload(PNG).getImage();
+        Throwable small = failure(thumbnailService.variant(image, AvatarVariant.SMALL));
+        Throwable medium = failure(thumbnailService.variant(image, AvatarVariant.MEDIUM));
+        Throwable large = failure(thumbnailService.variant(image, AvatarVariant.LARGE));
+
+        assertThat(small).isInstanceOf(ResponseStatusException.class);
+        assertThat(((ResponseStatusException) small).getStatus()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        assertThat(medium).isSameAs(small);
+        assertThat(large).isSameAs(small);
+    }
+
+    private static Throwable failure(CompletableFuture<Path> future) {
+        Throwable thrown = catchThrowable(future::get);
+        assertThat(thrown).isInstanceOf(ExecutionException.class);
+        return thrown.getCause();
+    }
+
+    private static byte[] realPng(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private StoredAvatar upload(byte[] content) {
+        return testRestTemplate.withBasicAuth("test-user", "P@ssw0rd")
+                .postForEntity(API_1_0_AVATARS, image(content), StoredAvatar.class).getBody();
+    }
+
+    private static HttpEntity<byte[]> image(byte[] content) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_PNG);
+        return new HttpEntity<>(content, headers);
+    }
+}
@@ -0,0 +1,28 @@
+package com.comme.comme;
+
+import com.comme.comme.shared.StageTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ComMeApplicationTests {
+
+    @Autowired
+    StageTimer stageTimer;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void contextLoads(){
+        stageTimer.time("context-load", () -> null);
+        assertThat(meterRegistry.find("comme.stage").tag("stage", "context-load").timer()).isNotNull();
+    }
+}
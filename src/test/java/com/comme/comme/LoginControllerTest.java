@@ -1,6 +1,10 @@
 package com.comme.comme;
 
+import com.comme.comme.configuration.AccessTokenService;
+import com.comme.comme.configuration.AuthUserService;
+import com.comme.comme.configuration.CredentialCache;
 import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.ServerTiming;
 import com.comme.comme.user.User;
 import com.comme.comme.user.UserRepository;
 import com.comme.comme.user.UserService;
@@ -11,6 +15,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +24,7 @@ import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,6 +46,12 @@ public class LoginControllerTest {
     @Autowired
     UserService userService;
 
+    @Autowired
+    CredentialCache credentialCache;
+
+    @Autowired
+    AuthUserService authUserService;
+
     @Before
     public void cleanup(){
         userRepository.deleteAll();
@@ -56,6 +69,7 @@ public class LoginControllerTest {
         authenticated();
         ResponseEntity<Object> response = login(Object.class);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(response.getHeaders().getFirst(ServerTiming.HEADER)).contains("auth;dur=");
     }
 
     @Test
@@ -64,6 +78,13 @@ public class LoginControllerTest {
         assertThat(response.getBody().getUrl()).isEqualTo(API_1_0_USERS);
     }
 
+    @Test
+    public void postLogin_withoutUserCredentials_receiveApiErrorWithStatusAndMessage(){
+        ResponseEntity<ApiError> response = login(ApiError.class);
+        assertThat(response.getBody().getStatus()).isEqualTo(401);
+        assertThat(response.getBody().getMessage()).isEqualTo("Unauthorized");
+    }
+
     @Test
     public void postLogin_withoutUserCredentials_receiveApiErrorWithoutValidationErrors(){
         ResponseEntity<String> response = login(String.class);
@@ -126,6 +147,139 @@ public class LoginControllerTest {
         assertThat(body.containsKey("password")).isFalse();
     }
 
+    @Test
+    public void postLogin_withValidCredentialsTwice_secondLoginServedFromCredentialCache(){
+        userService.save(createValidUser());
+        authenticated();
+        login(Object.class);
+        long hits = credentialCache.getHitCount();
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(credentialCache.getHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void postLogin_afterPasswordChange_receiveUnauthorizedForOldPassword(){
+        userService.save(createValidUser());
+        authenticated();
+        login(Object.class);
+        User inDB = userRepository.findByUsername("test-user");
+        inDB.setPassword("N3wP@ssword");
+        userService.save(inDB);
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogin_withOldUsernameAfterRename_receiveUnauthorized(){
+        userService.save(createValidUser());
+        authenticated();
+        login(Object.class);
+        User inDB = userRepository.findByUsername("test-user");
+        inDB.setUsername("renamed-user");
+        inDB.setPassword("P@ssw0rd");
+        userService.save(inDB);
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogin_withValidCredentials_receiveAccessToken(){
+        userService.save(createValidUser());
+        authenticated();
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getHeaders().getFirst(AccessTokenService.TOKEN_HEADER)).isNotBlank();
+    }
+
+    @Test
+    public void postLogin_withAccessToken_receiveLoggedInUserId(){
+        User inDB = userService.save(createValidUser());
+        authenticated();
+        String token = login(Object.class).getHeaders().getFirst(AccessTokenService.TOKEN_HEADER);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        ResponseEntity<Map<String, Object>> response = loginWithToken(token);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(((Number) response.getBody().get("id")).longValue()).isEqualTo(inDB.getId());
+        assertThat(response.getBody().get("surname")).isEqualTo(inDB.getSurname());
+        assertThat(response.getBody().get("image")).isEqualTo(inDB.getImage());
+    }
+
+    @Test
+    public void postLogin_withAccessToken_doesNotLoadUser(){
+        userService.save(createValidUser());
+        authenticated();
+        String token = login(Object.class).getHeaders().getFirst(AccessTokenService.TOKEN_HEADER);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authUserService.clear();
+        long misses = authUserService.getMissCount();
+
+        ResponseEntity<Map<String, Object>> response = loginWithToken(token);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(authUserService.getMissCount()).isEqualTo(misses);
+    }
+
+    @Test
+    public void postLogin_withTamperedAccessToken_receiveUnauthorized(){
+        userService.save(createValidUser());
+        authenticated();
+        String token = login(Object.class).getHeaders().getFirst(AccessTokenService.TOKEN_HEADER);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        int signatureStart = token.lastIndexOf('.') + 1;
+        byte[] signature = Base64.getUrlDecoder().decode(token.substring(signatureStart));
+        signature[0] ^= 1;
+        String tampered = token.substring(0, signatureStart) + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+
+        ResponseEntity<Map<String, Object>> response = loginWithToken(tampered);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogin_withValidCredentials_receiveServerTimingWithAuthStage(){
+        userService.save(createValidUser());
+        authenticated();
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getHeaders().getFirst(ServerTiming.HEADER)).contains("auth;dur=");
+    }
+
+    @Test
+    public void postLogin_withUnknownUserTwice_secondLookupServedFromNegativeCache(){
+        authenticated();
+        login(Object.class);
+        long negativeHits = authUserService.getNegativeHitCount();
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(authUserService.getNegativeHitCount()).isEqualTo(negativeHits + 1);
+    }
+
+    @Test
+    public void postLogin_afterUnknownUserRegisters_receiveOk(){
+        authenticated();
+        login(Object.class);
+        userService.save(createValidUser());
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void postLogin_withRepeatedIncorrectCredentials_receiveTooManyRequests(){
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("throttled-user", "P@ssw0rd"));
+        for (int i = 0; i < 10; i++) {
+            login(Object.class);
+        }
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotBlank();
+    }
+
+    private ResponseEntity<Map<String, Object>> loginWithToken(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return testRestTemplate.exchange(API_1_0_USERS, HttpMethod.POST, new HttpEntity<>(headers),
+                new ParameterizedTypeReference<Map<String, Object>>() {});
+    }
+
     private void authenticated() {
         testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("test-user", "P@ssw0rd"));
     }
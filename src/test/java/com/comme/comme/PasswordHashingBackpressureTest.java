@@ -0,0 +1,144 @@
+package com.comme.comme;
+
+import com.comme.comme.configuration.HashingCapacityExceededException;
+import com.comme.comme.configuration.PasswordHashingExecutor;
+import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.GenericResponse;
+import com.comme.comme.user.UserChangedEvent;
+import com.comme.comme.user.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "comme.security.hashing.threads=1",
+        "comme.security.hashing.queue-capacity=1",
+        "comme.security.hashing.retry-after=2s"
+})
+@ActiveProfiles("test")
+public class PasswordHashingBackpressureTest {
+
+    private static final String API_1_0_USERS = "/api/1.0/users";
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    InsertThreads insertThreads;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<CompletableFuture<Boolean>> blockers = new ArrayList<>();
+
+    @Before
+    public void cleanup(){
+        userRepository.deleteAll();
+    }
+
+    @After
+    public void releaseBlockers(){
+        release.countDown();
+        blockers.forEach(CompletableFuture::join);
+    }
+
+    @Test
+    public void submit_whenWorkerBusyAndQueueFull_throwsCapacityExceeded() throws Exception {
+        saturate();
+        HashingCapacityExceededException exception = catchThrowableOfType(
+                () -> passwordHashingExecutor.submit(() -> true), HashingCapacityExceededException.class);
+        assertThat(exception).isNotNull();
+        assertThat(exception.getRetryAfter()).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void postUser_whenHashingSaturated_receiveServiceUnavailableWithRetryAfter() throws Exception {
+        saturate();
+        ResponseEntity<ApiError> response = testRestTemplate.postForEntity(API_1_0_USERS, createValidUser(), ApiError.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(userRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void postUser_whenHashingHasCapacity_receiveOkAfterAsyncHash(){
+        ResponseEntity<GenericResponse> response = testRestTemplate.postForEntity(API_1_0_USERS, createValidUser(), GenericResponse.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(userRepository.findByUsername("test-user").getPassword()).startsWith("$2a$");
+    }
+
+    @Test
+    public void postUser_whenHashingHasCapacity_insertsOutsideHashingWorkers(){
+        testRestTemplate.postForEntity(API_1_0_USERS, createValidUser(), GenericResponse.class);
+        assertThat(insertThreads.byUsername.get("test-user")).isNotNull().doesNotStartWith("password-hashing-");
+    }
+
+    // Occupies the single worker, waits until it is running, then fills the one queue slot.
+    private void saturate() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        blockers.add(passwordHashingExecutor.submit(() -> {
+            running.countDown();
+            return await();
+        }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        blockers.add(passwordHashingExecutor.submit(this::await));
+    }
+
+    @TestConfiguration
+    static class InsertThreadsConfiguration {
+        @Bean
+        InsertThreads insertThreads() {
+            return new InsertThreads();
+        }
+    }
+
+    // User change events are published at persist time, on the thread running the insert
+    static class InsertThreads {
+        final Map<String, String> byUsername = new ConcurrentHashMap<>();
+
+        @EventListener
+        public void onUserChanged(UserChangedEvent event) {
+            byUsername.put(event.getUsername(), Thread.currentThread().getName());
+        }
+    }
+
+    private boolean await() {
+        try {
+            return release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
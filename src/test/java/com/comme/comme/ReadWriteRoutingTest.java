@@ -0,0 +1,136 @@
+package com.comme.comme;
+
+import com.comme.comme.configuration.ReadWriteRoutingDataSource;
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two in-memory H2 databases stand in for the primary and a replica; the replica gets a schema copy and is never written by the app.
+// Startup reads the primary only, so the context comes up before the replica has a schema.
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "comme.datasource.routing.enabled=true",
+        "comme.datasource.routing.replicas[0].url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "comme.datasource.routing.replicas[0].username=sa"
+})
+@ActiveProfiles("test")
+public class ReadWriteRoutingTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserService userService;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Before
+    public void copySchemaToReplica() {
+        userRepository.deleteAll();
+        primary.execute("SCRIPT NODATA TO 'target/routing-schema.sql'");
+        replica.execute("DROP ALL OBJECTS");
+        replica.execute("RUNSCRIPT FROM 'target/routing-schema.sql'");
+        // The test context binds a mock request per test, and the cleanup above pinned it to the primary
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @After
+    public void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void findByUsername_readOnly_servedByReplica() {
+        replica.update("INSERT INTO user (id, username, surname, password) VALUES (1, 'replica-user', 'surname', 'x')");
+
+        assertThat(userRepository.findByUsername("replica-user")).isNotNull();
+    }
+
+    @Test
+    public void save_writesGoToPrimaryOnly() {
+        userService.save(createValidUser());
+
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM user", Integer.class)).isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM user", Integer.class)).isEqualTo(0);
+    }
+
+    @Test
+    public void findByUsername_afterWriteInSameRequest_servedByPrimary() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        userService.save(createValidUser());
+
+        assertThat(userRepository.findByUsername("test-user")).isNotNull();
+    }
+
+    @Test
+    public void findByUsername_afterWriteInAnotherRequest_servedByReplica() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        userService.save(createValidUser());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        assertThat(userRepository.findByUsername("test-user")).isNull();
+    }
+
+    @Test
+    public void getConnection_withUnhealthyReplica_fallsBackToPrimary() throws SQLException {
+        DataSource primaryDataSource = new DriverManagerDataSource(PRIMARY_URL, "sa", "");
+        DataSource brokenReplica = new DriverManagerDataSource("jdbc:h2:mem:routing-broken;IFEXISTS=TRUE", "sa", "");
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primaryDataSource,
+                Collections.singletonList(brokenReplica), Duration.ofMinutes(1));
+        routing.useReplicas();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (Connection connection = routing.getConnection()) {
+            assertThat(connection.getMetaData().getURL()).contains("routing-primary");
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+
+    @Test
+    public void getConnection_beforeStartupCompleted_readsFromPrimary() throws SQLException {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(new DriverManagerDataSource(PRIMARY_URL, "sa", ""),
+                Collections.singletonList(new DriverManagerDataSource(REPLICA_URL, "sa", "")), Duration.ofMinutes(1));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            try (Connection connection = routing.getConnection()) {
+                assertThat(connection.getMetaData().getURL()).contains("routing-primary");
+            }
+            routing.useReplicas();
+            try (Connection connection = routing.getConnection()) {
+                assertThat(connection.getMetaData().getURL()).contains("routing-replica");
+            }
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.comme.comme;
+
+import com.comme.comme.user.RegistrationEvent;
+import com.comme.comme.user.RegistrationEventRepository;
+import com.comme.comme.user.User;
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A long settle window, so a row that commits after a higher id is never mistaken for a rolled back one
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "comme.users.feed.poll-interval=50ms",
+        "comme.users.feed.settle=10s"
+})
+@ActiveProfiles("test")
+public class RegistrationFeedTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    RegistrationEventRepository registrationEventRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Before
+    public void cleanup(){
+        userRepository.deleteAll();
+        registrationEventRepository.deleteAll();
+    }
+
+    @Test
+    public void getFeed_whenLowerIdCommitsAfterHigherId_receiveBoth() throws Exception {
+        HttpURLConnection feed = openFeed();
+        BufferedReader events = new BufferedReader(new InputStreamReader(feed.getInputStream(), StandardCharsets.UTF_8));
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService slowWriter = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> slowId = slowWriter.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                long id = registrationEventRepository.saveAndFlush(RegistrationEvent.of(createValidUser("slow-commit"))).getId();
+                written.countDown();
+                await(commit);
+                return id;
+            }));
+            assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+            long fastId = registrationEventRepository.save(RegistrationEvent.of(createValidUser("fast-commit"))).getId();
+
+            assertThat(readEventContaining(events, "fast-commit")).doesNotContain("slow-commit");
+            commit.countDown();
+            assertThat(slowId.get(5, TimeUnit.SECONDS)).isLessThan(fastId);
+            assertThat(readEventContaining(events, "slow-commit")).doesNotContain("fast-commit");
+        } finally {
+            commit.countDown();
+            slowWriter.shutdownNow();
+            feed.disconnect();
+        }
+    }
+
+    @Test
+    public void getFeed_withNoRegistrations_receiveHeadersBeforeFirstEvent() throws Exception {
+        HttpURLConnection feed = openFeed(2000);
+        try {
+            assertThat(feed.getContentType()).startsWith("text/event-stream");
+        } finally {
+            feed.disconnect();
+        }
+    }
+
+    @Test
+    public void saveUser_whenUpdatingExistingUser_doesNotWriteRegistrationEvent(){
+        userService.save(createValidUser());
+        User inDB = userRepository.findByUsername("test-user");
+        inDB.setPassword("N3wP@ssword");
+        userService.save(inDB);
+        assertThat(registrationEventRepository.count()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpURLConnection openFeed() throws IOException {
+        return openFeed(10000);
+    }
+
+    private HttpURLConnection openFeed(int readTimeout) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(testRestTemplate.getRootUri() + "/api/1.0/users/feed").openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setReadTimeout(readTimeout);
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        return connection;
+    }
+
+    private static String readEventContaining(BufferedReader reader, String text) throws IOException {
+        StringBuilder event = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                event.append(line).append('\n');
+            } else if (event.indexOf(text) >= 0) {
+                return event.toString();
+            } else {
+                event.setLength(0);
+            }
+        }
+        throw new AssertionError("Feed closed before an event containing " + text);
+    }
+}
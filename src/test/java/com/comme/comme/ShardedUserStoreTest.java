@@ -0,0 +1,138 @@
+package com.comme.comme;
+
+import com.comme.comme.user.DuplicateUsernameException;
+import com.comme.comme.user.ShardRebalancer;
+import com.comme.comme.user.User;
+import com.comme.comme.user.UserPage;
+import com.comme.comme.user.UserQueryService;
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import com.comme.comme.user.UserShards;
+import com.comme.comme.user.UserSummary;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "comme.users.sharding.enabled=true",
+        "comme.users.sharding.initialize-schema=true",
+        "comme.users.sharding.shards[0].url=jdbc:h2:mem:shard-0;DB_CLOSE_DELAY=-1",
+        "comme.users.sharding.shards[0].username=sa",
+        "comme.users.sharding.shards[1].url=jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1",
+        "comme.users.sharding.shards[1].username=sa",
+        "comme.users.sharding.shards[2].url=jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1",
+        "comme.users.sharding.shards[2].username=sa"
+})
+@ActiveProfiles("test")
+public class ShardedUserStoreTest {
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserQueryService userQueryService;
+
+    @Autowired
+    UserShards userShards;
+
+    @Before
+    public void cleanup(){
+        userShards.forEachShard(shard -> userRepository.deleteAll());
+    }
+
+    @Test
+    public void save_storesEachUserOnlyOnItsOwningShard(){
+        for (int i = 0; i < 12; i++) {
+            userService.save(createValidUser("sharded-user-" + i));
+        }
+        for (int i = 0; i < 12; i++) {
+            String username = "sharded-user-" + i;
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                int count = shard(shard).queryForObject("select count(*) from user where username = ?", Integer.class, username);
+                assertThat(count).isEqualTo(shard == userShards.shardOf(username) ? 1 : 0);
+            }
+        }
+    }
+
+    @Test
+    public void findByUsername_onOwningShard_returnsUser(){
+        userService.save(createValidUser("sharded-user"));
+        User inDB = userShards.forUsername("sharded-user", () -> userRepository.findByUsername("sharded-user"));
+        assertThat(inDB).isNotNull();
+    }
+
+    @Test(expected = DuplicateUsernameException.class)
+    public void save_withTakenUsername_rejectedByOwningShard(){
+        userService.save(createValidUser("sharded-user"));
+        userService.save(createValidUser("sharded-user"));
+    }
+
+    @Test
+    public void page_acrossShards_returnsAllUsersInIdOrder(){
+        for (int i = 0; i < 10; i++) {
+            userService.save(createValidUser("sharded-user-" + i));
+        }
+        List<UserSummary> all = new ArrayList<>();
+        UserPage page = userQueryService.page(0, "", "", 4);
+        all.addAll(page.getContent());
+        while (page.getNext() != null) {
+            page = userQueryService.page(page.getNext(), "", "", 4);
+            all.addAll(page.getContent());
+        }
+        List<Long> ids = all.stream().map(UserSummary::getId).collect(Collectors.toList());
+        assertThat(ids).hasSize(10).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void rebalance_fromTwoToThreeShards_movesUsersToTheirNewOwner(){
+        List<String> urls = Arrays.asList("jdbc:h2:mem:rebalance-0;DB_CLOSE_DELAY=-1",
+                "jdbc:h2:mem:rebalance-1;DB_CLOSE_DELAY=-1", "jdbc:h2:mem:rebalance-2;DB_CLOSE_DELAY=-1");
+        shard(0).execute("SCRIPT NODATA TO 'target/shard-schema.sql'");
+        for (String url : urls) {
+            JdbcTemplate database = database(url);
+            database.execute("DROP ALL OBJECTS");
+            database.execute("RUNSCRIPT FROM 'target/shard-schema.sql'");
+        }
+        for (int i = 0; i < 20; i++) {
+            String username = "rebalanced-user-" + i;
+            database(urls.get(UserShards.shardOf(username, 2))).update(
+                    "insert into user (id, username, surname, password) values (?, ?, 'surname', 'x')", i + 1, username);
+        }
+
+        new ShardRebalancer(urls.subList(0, 2), urls, "sa", "").run();
+
+        for (int i = 0; i < 20; i++) {
+            String username = "rebalanced-user-" + i;
+            for (int shard = 0; shard < 3; shard++) {
+                int count = database(urls.get(shard)).queryForObject("select count(*) from user where username = ?", Integer.class, username);
+                assertThat(count).isEqualTo(shard == UserShards.shardOf(username, 3) ? 1 : 0);
+            }
+        }
+    }
+
+    private static JdbcTemplate shard(int shard) {
+        return database("jdbc:h2:mem:shard-" + shard + ";DB_CLOSE_DELAY=-1");
+    }
+
+    private static JdbcTemplate database(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+    }
+}
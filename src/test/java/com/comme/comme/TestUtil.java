@@ -4,8 +4,12 @@ import com.comme.comme.user.User;
 
 public class TestUtil {
     public static User createValidUser() {
+        return createValidUser("test-user");
+    }
+
+    public static User createValidUser(String username) {
         User user = new User();
-        user.setUsername("test-user");
+        user.setUsername(username);
         user.setSurname("test-surnae");
         user.setPassword("P@ssw0rd");
         user.setImage("image.png");
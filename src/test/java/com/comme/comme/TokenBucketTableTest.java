@@ -0,0 +1,104 @@
+package com.comme.comme;
+
+import com.comme.comme.shared.TokenBucketTable;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTableTest {
+
+    @Test
+    public void tryAcquire_whenCapacityUsed_returnsWaitUntilNextToken(){
+        TokenBucketTable table = new TokenBucketTable(16, 2, Duration.ofHours(1), Duration.ofHours(1));
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+        assertThat(table.tryAcquire("user")).isPositive().isLessThanOrEqualTo(Duration.ofMinutes(30).toNanos());
+    }
+
+    @Test
+    public void tryAcquire_afterRefillInterval_succeedsAgain() throws InterruptedException {
+        TokenBucketTable table = new TokenBucketTable(16, 1, Duration.ofMillis(100), Duration.ofHours(1));
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+        long wait = table.tryAcquire("user");
+        assertThat(wait).isPositive();
+        TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+    }
+
+    @Test
+    public void release_afterAcquire_returnsToken(){
+        TokenBucketTable table = new TokenBucketTable(16, 1, Duration.ofHours(1), Duration.ofHours(1));
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+        table.release("user");
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+    }
+
+    @Test
+    public void tryAcquire_forDifferentKeys_usesSeparateBuckets(){
+        TokenBucketTable table = new TokenBucketTable(16, 1, Duration.ofHours(1), Duration.ofHours(1));
+        // "Aa" and "BB" share a String.hashCode
+        assertThat(table.tryAcquire("Aa")).isEqualTo(0);
+        assertThat(table.tryAcquire("BB")).isEqualTo(0);
+        assertThat(table.tryAcquire("Aa")).isPositive();
+    }
+
+    @Test
+    public void size_afterTtl_dropsIdleBuckets() throws InterruptedException {
+        TokenBucketTable table = new TokenBucketTable(16, 1, Duration.ofHours(1), Duration.ofMillis(50));
+        table.tryAcquire("user");
+        assertThat(table.size()).isEqualTo(1);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(table.size()).isEqualTo(0);
+        assertThat(table.tryAcquire("user")).isEqualTo(0);
+    }
+
+    @Test
+    public void tryAcquire_whenTableFull_reusesSlotsWithoutGrowing(){
+        TokenBucketTable table = new TokenBucketTable(8, 1, Duration.ofHours(1), Duration.ofHours(1));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.tryAcquire("user-" + i)).isEqualTo(0);
+        }
+        assertThat(table.size()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    public void tryAcquire_underContention_grantsExactlyCapacity() throws Exception {
+        int capacity = 1000;
+        int threads = 8;
+        TokenBucketTable table = new TokenBucketTable(16, capacity, Duration.ofDays(1), Duration.ofHours(1));
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < capacity / threads * 2; i++) {
+                        if (table.tryAcquire("user") == 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(granted.get()).isEqualTo(capacity);
+    }
+}
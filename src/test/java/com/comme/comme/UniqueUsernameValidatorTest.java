@@ -0,0 +1,53 @@
+package com.comme.comme;
+
+import com.comme.comme.user.RegistrationChecks;
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UsernameIndex;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.validation.Validator;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+// The name is always taken in the database, so only a repository lookup can report it
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class UniqueUsernameValidatorTest {
+
+    @Autowired
+    Validator validator;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @MockBean
+    UsernameIndex usernameIndex;
+
+    @Before
+    public void cleanup(){
+        userRepository.deleteAll();
+        userRepository.save(createValidUser("taken-user"));
+    }
+
+    @Test
+    public void validateUsername_whenIndexRulesOutName_skipsRepositoryLookup(){
+        when(usernameIndex.mightExist("taken-user")).thenReturn(false);
+        assertThat(validator.validateProperty(createValidUser("taken-user"), "username", RegistrationChecks.class)).isEmpty();
+    }
+
+    @Test
+    public void validateUsername_whenIndexMightContainName_queriesRepository(){
+        when(usernameIndex.mightExist("taken-user")).thenReturn(true);
+        assertThat(validator.validateProperty(createValidUser("taken-user"), "username", RegistrationChecks.class)).hasSize(1);
+    }
+}
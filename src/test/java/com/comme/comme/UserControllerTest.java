@@ -1,9 +1,16 @@
 package com.comme.comme;
 
 import com.comme.comme.error.ApiError;
+import com.comme.comme.shared.BatchResponse;
 import com.comme.comme.shared.GenericResponse;
+import com.comme.comme.shared.ServerTiming;
+import com.comme.comme.user.DuplicateUsernameException;
 import com.comme.comme.user.User;
+import com.comme.comme.user.UserPage;
+import com.comme.comme.user.UserSummary;
 import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -12,15 +19,27 @@ import org.junit.runners.MethodSorters;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import static com.comme.comme.TestUtil.createValidUser;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -38,6 +57,12 @@ public class UserControllerTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Before
     public void cleanup(){
         userRepository.deleteAll();
@@ -231,6 +256,328 @@ public class UserControllerTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    @Test
+    public void postUser_whenAnotherUserHasSameUsername_receiveUsernameInUseMessage(){
+        userRepository.save(createValidUser());
+
+        ResponseEntity<ApiError> response = postSignup(createValidUser(), ApiError.class);
+        assertThat(response.getBody().getValidationErrors().get("username")).isEqualTo("This name is in use");
+    }
+
+    @Test(expected = DuplicateUsernameException.class)
+    public void saveUser_whenUsernameTakenWithoutPrecheck_uniqueIndexRejectsDuplicate(){
+        userRepository.save(createValidUser());
+
+        userService.save(createValidUser());
+    }
+
+    @Test
+    public void postUser_whenUserIsValid_receiveServerTimingWithHashAndSaveStages(){
+        ResponseEntity<Object> response = postSignup(createValidUser(), Object.class);
+        assertThat(response.getHeaders().getFirst(ServerTiming.HEADER)).contains("hash;dur=").contains("save;dur=");
+    }
+
+    @Test
+    public void postBatch_whenUsersAreValid_allUsersSavedToDatabase(){
+        ResponseEntity<BatchResponse> response = postBatch(Arrays.asList(createValidUser("user-one"), createValidUser("user-two")));
+        assertThat(response.getBody().getSaved()).isEqualTo(2);
+        // the two new users and the caller
+        assertThat(userRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void postBatch_whenUnauthenticated_receiveUnauthorized(){
+        ResponseEntity<Object> response = testRestTemplate.postForEntity(API_1_0_USERS + "/batch",
+                Arrays.asList(createValidUser("user-one")), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(userRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void postBatch_whenUsersAreValid_hashesOnPasswordHashingExecutor(){
+        userService.save(createValidUser("batcher"));
+        double hashed = meterRegistry.get("comme.hashing.wait").functionTimer().count();
+        postBatch(Arrays.asList(createValidUser("user-one"), createValidUser("user-two")));
+        assertThat(meterRegistry.get("comme.hashing.wait").functionTimer().count()).isGreaterThanOrEqualTo(hashed + 2);
+        assertThat(userRepository.findByUsername("user-one").getPassword()).startsWith("$2a$");
+    }
+
+    @Test
+    public void postBatch_whenOneUserIsInvalid_receiveValidationErrorForThatItemOnly(){
+        User invalid = createValidUser("user-two");
+        invalid.setPassword("nullnull");
+        ResponseEntity<BatchResponse> response = postBatch(Arrays.asList(createValidUser("user-one"), invalid));
+        BatchResponse body = response.getBody();
+        assertThat(body.getSaved()).isEqualTo(1);
+        assertThat(body.getResults().get(1).getError().getValidationErrors().get("password"))
+                .isEqualTo("Password must have at least one uppercase, one lowercase letter and one number");
+    }
+
+    @Test
+    public void postBatch_whenUsernameExistsOrRepeats_receiveUsernameErrors(){
+        userRepository.save(createValidUser("user-one"));
+        ResponseEntity<BatchResponse> response = postBatch(Arrays.asList(
+                createValidUser("user-one"), createValidUser("user-two"), createValidUser("user-two")));
+        BatchResponse body = response.getBody();
+        assertThat(body.getSaved()).isEqualTo(1);
+        assertThat(body.getResults().get(0).getError().getValidationErrors()).containsKey("username");
+        assertThat(body.getResults().get(2).getError().getValidationErrors()).containsKey("username");
+    }
+
+    @Test
+    public void getUsers_whenMoreUsersThanPageSize_receivePagesInIdOrder(){
+        userRepository.save(createValidUser("user-one"));
+        userRepository.save(createValidUser("user-two"));
+        userRepository.save(createValidUser("user-three"));
+
+        UserPage first = testRestTemplate.getForObject(API_1_0_USERS + "?size=2", UserPage.class);
+        UserPage second = testRestTemplate.getForObject(API_1_0_USERS + "?size=2&after=" + first.getNext(), UserPage.class);
+
+        assertThat(first.getContent()).extracting("username").containsExactly("user-one", "user-two");
+        assertThat(second.getContent()).extracting("username").containsExactly("user-three");
+        assertThat(second.getNext()).isNull();
+    }
+
+    @Test
+    public void getUsers_withUsernamePrefix_receiveOnlyMatchingUsers(){
+        userRepository.save(createValidUser("user-one"));
+        userRepository.save(createValidUser("other-user"));
+
+        UserPage page = testRestTemplate.getForObject(API_1_0_USERS + "?username=user", UserPage.class);
+        assertThat(page.getContent()).extracting("username").containsExactly("user-one");
+    }
+
+    @Test
+    public void getUsers_withStream_receiveAllUsersWithoutPassword(){
+        userRepository.save(createValidUser("user-one"));
+        userRepository.save(createValidUser("user-two"));
+
+        String body = testRestTemplate.getForObject(API_1_0_USERS + "?stream=true", String.class);
+        assertThat(body).contains("user-one").contains("user-two").doesNotContain("password");
+    }
+
+    @Test
+    public void getSuggestions_withPrefix_receiveUsernameMatchesBeforeSurnameMatches(){
+        User bySurname = createValidUser("other-user");
+        bySurname.setSurname("tester");
+        userRepository.save(bySurname);
+        userRepository.save(createValidUser("test-user"));
+        User unrelated = createValidUser("unrelated");
+        unrelated.setSurname("unrelated-surname");
+        userRepository.save(unrelated);
+
+        UserSummary[] suggestions = testRestTemplate.getForObject(API_1_0_USERS + "/suggest?prefix=TES", UserSummary[].class);
+        assertThat(suggestions).extracting("username").containsExactly("test-user", "other-user");
+    }
+
+    @Test
+    public void getSuggestions_afterUserRemoved_userIsNotSuggested(){
+        userRepository.save(createValidUser("test-user"));
+        userRepository.deleteAll();
+
+        UserSummary[] suggestions = testRestTemplate.getForObject(API_1_0_USERS + "/suggest?prefix=test", UserSummary[].class);
+        assertThat(suggestions).isEmpty();
+    }
+
+    @Test
+    public void getFeed_whenUserRegisters_receiveRegistrationEvent() throws IOException {
+        HttpURLConnection feed = openFeed(null);
+        try {
+            userService.save(createValidUser("feed-user"));
+            assertThat(readEventContaining(feed, "feed-user")).contains("event:registrations").doesNotContain("password");
+        } finally {
+            feed.disconnect();
+        }
+    }
+
+    @Test
+    public void getFeed_withLastEventId_receiveMissedRegistrations() throws IOException {
+        HttpURLConnection live = openFeed(null);
+        try {
+            userService.save(createValidUser("missed-user"));
+            readEventContaining(live, "missed-user");
+        } finally {
+            live.disconnect();
+        }
+
+        HttpURLConnection resumed = openFeed("0");
+        try {
+            assertThat(readEventContaining(resumed, "missed-user")).contains("id:");
+        } finally {
+            resumed.disconnect();
+        }
+    }
+
+    @Test
+    public void postImport_withNdjson_receiveProgressAndLineErrors(){
+        String body = "{\"username\":\"import-one\",\"surname\":\"test-surname\",\"password\":\"P@ssw0rd\"}\n"
+                + "{\"username\":\"imp\",\"surname\":\"test-surname\",\"password\":\"P@ssw0rd\"}\n"
+                + "not json\n";
+
+        String report = postImport(body, "application/x-ndjson", "").getBody();
+        assertThat(report).contains("\"index\":2").contains("\"index\":3")
+                .contains("\"checkpoint\":3,\"imported\":1,\"failed\":2,\"done\":true");
+        assertThat(userRepository.findByUsername("import-one")).isNotNull();
+    }
+
+    @Test
+    public void postImport_withCsvFromCheckpoint_skipLinesAlreadyImported(){
+        String body = "username,surname,password\n"
+                + "import-one,test-surname,P@ssw0rd\n"
+                + "\"import-two\",\"surname, quoted\",P@ssw0rd\n";
+
+        String report = postImport(body, "text/csv", "?from=2").getBody();
+        assertThat(report).contains("\"imported\":1,\"failed\":0");
+        assertThat(userRepository.findByUsername("import-one")).isNull();
+        assertThat(userRepository.findByUsername("import-two").getSurname()).isEqualTo("surname, quoted");
+    }
+
+    @Test
+    public void postImport_withoutUserCredentials_receiveUnauthorized(){
+        ResponseEntity<String> response = testRestTemplate.postForEntity(API_1_0_USERS + "/import",
+                importRequest("", "application/x-ndjson"), String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postImport_withEncodedPasswordsWhenDisabled_receiveForbidden(){
+        ResponseEntity<String> response = postImport("", "application/x-ndjson", "?encoded=true");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    @Test
+    public void getExport_withoutAuthentication_receiveUnauthorized(){
+        userRepository.save(createValidUser("user-one"));
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity(API_1_0_USERS + "/export", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void getExport_whenUsersExist_receiveOneJsonLinePerUser(){
+        userService.save(createValidUser("user-one"));
+        userRepository.save(createValidUser("user-two"));
+
+        String body = testRestTemplate.withBasicAuth("user-one", "P@ssw0rd").getForObject(API_1_0_USERS + "/export", String.class);
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":").contains("\"username\":\"user-one\"").doesNotContain("password");
+        assertThat(lines[1]).contains("\"username\":\"user-two\"");
+    }
+
+    @Test
+    public void getExport_withGzip_receiveCompressedNdjson() throws IOException {
+        userService.save(createValidUser("user-one"));
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(testRestTemplate.getRootUri() + API_1_0_USERS + "/export").openConnection();
+        connection.setRequestProperty(HttpHeaders.AUTHORIZATION, "Basic " + HttpHeaders.encodeBasicAuth("user-one", "P@ssw0rd", null));
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        assertThat(connection.getHeaderField("Content-Encoding")).isEqualTo("gzip");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(connection.getInputStream()), StandardCharsets.UTF_8))) {
+            assertThat(reader.readLine()).contains("\"username\":\"user-one\"");
+            assertThat(reader.readLine()).isNull();
+        }
+    }
+
+    @Test
+    public void getUser_whenUserExists_receiveBaseViewWithETag(){
+        userRepository.save(createValidUser("profile-user"));
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity(API_1_0_USERS + "/by-name/profile-user", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).startsWith("\"");
+        assertThat(response.getBody()).contains("\"username\":\"profile-user\"").doesNotContain("password");
+    }
+
+    @Test
+    public void getUser_withMatchingETag_receiveNotModified(){
+        userRepository.save(createValidUser("profile-user"));
+        String etag = testRestTemplate.getForEntity(API_1_0_USERS + "/by-name/profile-user", String.class).getHeaders().getETag();
+
+        ResponseEntity<String> response = getUserIfNoneMatch("profile-user", etag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    public void getUser_afterProfileUpdated_receiveNewETag(){
+        userRepository.save(createValidUser("profile-user"));
+        String etag = testRestTemplate.getForEntity(API_1_0_USERS + "/by-name/profile-user", String.class).getHeaders().getETag();
+
+        userService.updateImage("profile-user", "changed.png");
+
+        ResponseEntity<String> response = getUserIfNoneMatch("profile-user", etag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("changed.png");
+    }
+
+    @Test
+    public void getUser_whenUsernameMatchesFixedRoute_receiveProfile(){
+        userRepository.save(createValidUser("feed"));
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity(API_1_0_USERS + "/by-name/feed", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("\"username\":\"feed\"");
+    }
+
+    @Test
+    public void getUser_whenUserDoesNotExist_receiveNotFound(){
+        ResponseEntity<String> response = testRestTemplate.getForEntity(API_1_0_USERS + "/by-name/unknown-user", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private ResponseEntity<String> getUserIfNoneMatch(String username, String etag){
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return testRestTemplate.exchange(API_1_0_USERS + "/by-name/" + username, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private ResponseEntity<String> postImport(String body, String contentType, String query){
+        userService.save(createValidUser("importer"));
+        return testRestTemplate.withBasicAuth("importer", "P@ssw0rd")
+                .postForEntity(API_1_0_USERS + "/import" + query, importRequest(body, contentType), String.class);
+    }
+
+    private static HttpEntity<String> importRequest(String body, String contentType){
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        return new HttpEntity<>(body, headers);
+    }
+
+    private HttpURLConnection openFeed(String lastEventId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(testRestTemplate.getRootUri() + API_1_0_USERS + "/feed").openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        connection.setReadTimeout(10000);
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        return connection;
+    }
+
+    private String readEventContaining(HttpURLConnection connection, String text) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        StringBuilder event = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                event.append(line).append('\n');
+            } else if (event.indexOf(text) >= 0) {
+                return event.toString();
+            } else {
+                event.setLength(0);
+            }
+        }
+        throw new AssertionError("Feed closed before an event containing " + text);
+    }
+
+    private ResponseEntity<BatchResponse> postBatch(List<User> users){
+        if (userRepository.findByUsername("batcher") == null) {
+            userService.save(createValidUser("batcher"));
+        }
+        return testRestTemplate.withBasicAuth("batcher", "P@ssw0rd")
+                .postForEntity(API_1_0_USERS + "/batch", users, BatchResponse.class);
+    }
+
     public <T> ResponseEntity<T> postSignup(Object request, Class<T> response){
         return testRestTemplate.postForEntity(API_1_0_USERS, request, response);
     }
@@ -0,0 +1,77 @@
+package com.comme.comme;
+
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "comme.users.import.allow-encoded-passwords=true")
+@ActiveProfiles("test")
+public class UserImportTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Before
+    public void cleanup(){
+        userRepository.deleteAll();
+        userService.save(createValidUser("importer"));
+    }
+
+    @Test
+    public void postImport_withEncodedPassword_storesHashUnchanged(){
+        String hash = new BCryptPasswordEncoder().encode("S3cr3t@pass");
+
+        String report = postImport("{\"username\":\"encoded-user\",\"surname\":\"test-surname\",\"password\":\"" + hash + "\"}\n");
+
+        assertThat(report).contains("\"imported\":1,\"failed\":0,\"done\":true");
+        assertThat(userRepository.findByUsername("encoded-user").getPassword()).isEqualTo(hash);
+    }
+
+    @Test
+    public void postLogin_afterImportWithEncodedPassword_acceptsOriginalPassword(){
+        String hash = new BCryptPasswordEncoder().encode("S3cr3t@pass");
+        postImport("{\"username\":\"encoded-user\",\"surname\":\"test-surname\",\"password\":\"" + hash + "\"}\n");
+
+        ResponseEntity<String> response = testRestTemplate.withBasicAuth("encoded-user", "S3cr3t@pass")
+                .postForEntity("/api/1.0/login", null, String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void postImport_withPlainPasswordWhenEncodedAllowed_hashesIt(){
+        postImport("{\"username\":\"plain-user\",\"surname\":\"test-surname\",\"password\":\"P@ssw0rd\"}\n");
+
+        assertThat(userRepository.findByUsername("plain-user").getPassword()).startsWith("$2a$").isNotEqualTo("P@ssw0rd");
+    }
+
+    private String postImport(String body){
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        return testRestTemplate.withBasicAuth("importer", "P@ssw0rd")
+                .postForEntity("/api/1.0/users/import?encoded=true", new HttpEntity<>(body, headers), String.class).getBody();
+    }
+}
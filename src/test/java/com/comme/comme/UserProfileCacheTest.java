@@ -0,0 +1,78 @@
+package com.comme.comme;
+
+import com.comme.comme.configuration.ShardingProperties;
+import com.comme.comme.user.UserProfileCache;
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserShards;
+import com.comme.comme.user.UserSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Each lookup invalidates a username while the load is still in flight, the way a concurrent update would
+public class UserProfileCacheTest {
+
+    private UserRepository userRepository;
+
+    private UserShards userShards;
+
+    private UserProfileCache userProfileCache;
+
+    @Before
+    public void setUp(){
+        userRepository = mock(UserRepository.class);
+        userShards = new UserShards(new ShardingProperties());
+        userProfileCache = new UserProfileCache(userRepository, userShards, new ObjectMapper(), 100, Duration.ofHours(1));
+    }
+
+    @After
+    public void tearDown(){
+        userShards.destroy();
+    }
+
+    @Test
+    public void get_whenOtherUserChangesDuringLoad_cachesProfile(){
+        when(userRepository.findSummaryByUsername("user-one")).thenAnswer(invocation -> {
+            userProfileCache.invalidate("user-two");
+            return new UserSummary(1, "user-one", "test-surname", null);
+        });
+
+        userProfileCache.get("user-one");
+        userProfileCache.get("user-one");
+
+        verify(userRepository, times(1)).findSummaryByUsername("user-one");
+    }
+
+    @Test
+    public void get_whenSameUserChangesDuringLoad_doesNotCacheProfile(){
+        when(userRepository.findSummaryByUsername("user-one")).thenAnswer(invocation -> {
+            userProfileCache.invalidate("user-one");
+            return new UserSummary(1, "user-one", "test-surname", null);
+        });
+
+        userProfileCache.get("user-one");
+        userProfileCache.get("user-one");
+
+        verify(userRepository, times(2)).findSummaryByUsername("user-one");
+    }
+
+    @Test
+    public void get_afterLoadCompletes_invalidateStillRemovesProfile(){
+        when(userRepository.findSummaryByUsername("user-one")).thenReturn(new UserSummary(1, "user-one", "test-surname", null));
+
+        userProfileCache.get("user-one");
+        userProfileCache.invalidate("user-one");
+        assertThat(userProfileCache.get("user-one").getJson()).isNotEmpty();
+
+        verify(userRepository, times(2)).findSummaryByUsername("user-one");
+    }
+}
@@ -3,15 +3,23 @@ package com.comme.comme;
 import com.comme.comme.user.User;
 import com.comme.comme.user.UserRepository;
 import com.comme.comme.user.UserService;
+import com.comme.comme.user.UserSummary;
+import org.hibernate.Session;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static com.comme.comme.TestUtil.createValidUser;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,4 +49,70 @@ public class UserRepositoryTest {
         assertThat(inDB).isNull();
     }
 
+    @Test
+    public void existsByUsername_whenUserExists_returnsTrue(){
+        testEntityManager.persist(createValidUser());
+
+        assertThat(userRepository.existsByUsername("test-user")).isTrue();
+    }
+
+    @Test
+    public void existsByUsername_whenUserDoesNotExists_returnsFalse(){
+        assertThat(userRepository.existsByUsername("ssssssssssss")).isFalse();
+    }
+
+    @Test
+    public void findSummaryByUsername_whenUserExists_doesNotLoadUserEntity(){
+        User user = testEntityManager.persistFlushFind(createValidUser());
+        testEntityManager.clear();
+
+        UserSummary summary = userRepository.findSummaryByUsername("test-user");
+
+        assertThat(summary).isEqualTo(new UserSummary(user.getId(), "test-user", user.getSurname(), user.getImage()));
+        assertThat(managedEntityCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void findSummaryPage_whenUsersExist_doesNotLoadUserEntities(){
+        testEntityManager.persist(createValidUser("test-user-1"));
+        testEntityManager.persist(createValidUser("test-user-2"));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        List<UserSummary> page = userRepository.findByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWith(
+                0, "test", "", PageRequest.of(0, 10, Sort.by("id")));
+
+        assertThat(page).extracting(UserSummary::getUsername).containsExactly("test-user-1", "test-user-2");
+        assertThat(managedEntityCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void streamSummaries_whenUsersExist_doesNotLoadUserEntities(){
+        testEntityManager.persist(createValidUser("test-user-1"));
+        testEntityManager.persist(createValidUser("test-user-2"));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        try (Stream<UserSummary> users = userRepository
+                .streamByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWithOrderByIdAsc(0, "", "")) {
+            assertThat(users.map(UserSummary::getUsername).collect(Collectors.toList()))
+                    .containsExactly("test-user-1", "test-user-2");
+        }
+        assertThat(managedEntityCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void findSummaryPage_whenPrefixContainsWildcard_matchesItLiterally(){
+        testEntityManager.persist(createValidUser("test_user"));
+        testEntityManager.persist(createValidUser("testXuser"));
+
+        List<UserSummary> page = userRepository.findByIdGreaterThanAndUsernameStartingWithAndSurnameStartingWith(
+                0, "test_", "", PageRequest.of(0, 10, Sort.by("id")));
+
+        assertThat(page).extracting(UserSummary::getUsername).containsExactly("test_user");
+    }
+
+    private int managedEntityCount(){
+        return testEntityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+    }
 }
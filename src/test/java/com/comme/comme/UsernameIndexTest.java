@@ -0,0 +1,51 @@
+package com.comme.comme;
+
+import com.comme.comme.user.UserRepository;
+import com.comme.comme.user.UserService;
+import com.comme.comme.user.UsernameIndex;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class UsernameIndexTest {
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Before
+    public void cleanup(){
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void mightExist_afterUserSavedThroughRepository_reportsNewUsername(){
+        String username = "index-new-user";
+        assertThat(usernameIndex.mightExist(username)).isFalse();
+        userRepository.save(createValidUser(username));
+        assertThat(usernameIndex.mightExist(username)).isTrue();
+    }
+
+    @Test
+    public void mightExist_afterUserRegistered_reportsNewUsername(){
+        String username = "index-registered-user";
+        assertThat(usernameIndex.mightExist(username)).isFalse();
+        userService.save(createValidUser(username));
+        assertThat(usernameIndex.mightExist(username)).isTrue();
+    }
+}
@@ -0,0 +1,67 @@
+package com.comme.comme;
+
+import com.comme.comme.configuration.WarmupRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"comme.warmup.enabled=true", "comme.warmup.duration=500ms", "comme.warmup.threads=1"})
+@ActiveProfiles("test")
+public class WarmupTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    WarmupRunner warmupRunner;
+
+    @Autowired
+    ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void startup_afterWarmup_reportsReady(){
+        assertThat(warmupRunner.getIterations()).isPositive();
+        assertThat(applicationAvailability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/health/readiness", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("UP");
+    }
+
+    @Test
+    public void startup_afterWarmup_leavesPrincipalCachesEmpty(){
+        assertThat(meterRegistry.get("comme.auth.principal.cache.size").gauge().value()).isEqualTo(0);
+        assertThat(meterRegistry.get("comme.auth.principal.cache.negative.size").gauge().value()).isEqualTo(0);
+    }
+
+    @Test
+    public void startup_afterWarmup_recordsNoLookupOrStageMetrics(){
+        assertThat(warmupRunner.getIterations()).isPositive();
+        assertThat(meterRegistry.get("comme.auth.principal.cache.misses").functionCounter().count()).isEqualTo(0);
+        assertThat(meterRegistry.get("comme.auth.principal.load").functionTimer().count()).isEqualTo(0);
+        assertThat(stageCount("unique-username")).isEqualTo(0);
+        assertThat(stageCount("load-user")).isEqualTo(0);
+    }
+
+    private long stageCount(String stage){
+        Timer timer = meterRegistry.find("comme.stage").tag("stage", stage).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,107 @@
+package com.comme.comme.configuration;
+
+import com.comme.comme.user.User;
+import org.junit.Test;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static com.comme.comme.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccessTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    public void verify_beforeExpiry_returnsProfileFromClaims(){
+        TokenProperties properties = properties("current");
+        User user = createValidUser();
+        user.setId(42);
+        user.setImage("avatar.png");
+        String token = service(properties, NOW).issue(user);
+
+        User claims = service(properties, NOW.plus(properties.getTtl()).minusSeconds(1)).verify(token);
+
+        assertThat(claims.getId()).isEqualTo(42);
+        assertThat(claims.getUsername()).isEqualTo(user.getUsername());
+        assertThat(claims.getSurname()).isEqualTo(user.getSurname());
+        assertThat(claims.getImage()).isEqualTo("avatar.png");
+        assertThat(claims.getPassword()).isNull();
+    }
+
+    @Test
+    public void verify_atExpiry_returnsNull(){
+        TokenProperties properties = properties("current");
+        String token = service(properties, NOW).issue(createValidUser());
+
+        assertThat(service(properties, NOW.plus(properties.getTtl())).verify(token)).isNull();
+    }
+
+    @Test
+    public void verify_withSeparatorInClaims_returnsClaimsUnchanged(){
+        TokenProperties properties = properties("current");
+        User user = createValidUser();
+        user.setSurname("line\nbreak");
+        user.setImage(null);
+
+        User claims = service(properties, NOW).verify(service(properties, NOW).issue(user));
+
+        assertThat(claims.getSurname()).isEqualTo("line\nbreak");
+        assertThat(claims.getImage()).isNull();
+    }
+
+    @Test
+    public void verify_afterActiveKeyRotated_acceptsTokensOfPreviousKey(){
+        TokenProperties properties = properties("previous", "current");
+        properties.setActiveKey("previous");
+        String oldToken = service(properties, NOW).issue(createValidUser());
+
+        properties.setActiveKey("current");
+        AccessTokenService rotated = service(properties, NOW);
+        String newToken = rotated.issue(createValidUser());
+
+        assertThat(newToken).startsWith("current.");
+        assertThat(rotated.verify(oldToken)).isNotNull();
+        assertThat(rotated.verify(newToken)).isNotNull();
+    }
+
+    @Test
+    public void verify_afterPreviousKeyRemoved_rejectsItsTokens(){
+        TokenProperties properties = properties("previous", "current");
+        properties.setActiveKey("previous");
+        String oldToken = service(properties, NOW).issue(createValidUser());
+
+        properties.getKeys().remove("previous");
+        properties.setActiveKey("current");
+
+        assertThat(service(properties, NOW).verify(oldToken)).isNull();
+    }
+
+    @Test
+    public void verify_withTokenSignedByAnotherSecretUnderSameKeyId_returnsNull(){
+        String token = service(properties("current"), NOW).issue(createValidUser());
+
+        assertThat(service(properties("current"), NOW).verify(token)).isNull();
+    }
+
+    private static AccessTokenService service(TokenProperties properties, Instant now) {
+        return new AccessTokenService(properties, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    // Every call generates fresh secrets
+    private static TokenProperties properties(String... keyIds) {
+        TokenProperties properties = new TokenProperties();
+        properties.setTtl(Duration.ofMinutes(15));
+        for (String keyId : keyIds) {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            properties.getKeys().put(keyId, Base64.getEncoder().encodeToString(secret));
+        }
+        return properties;
+    }
+}